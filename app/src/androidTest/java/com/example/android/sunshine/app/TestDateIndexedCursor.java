@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.database.MatrixCursor;
+import android.support.v7.widget.RecyclerView;
+import android.test.AndroidTestCase;
+
+public class TestDateIndexedCursor extends AndroidTestCase {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    public void testPositionForDate() {
+        MatrixCursor rows = new MatrixCursor(new String[]{"_id", "date"});
+        for (int i = 0; i < 14; i++) {
+            rows.addRow(new Object[]{i, 1000 * DAY + i * DAY});
+        }
+        // A second row for the first date must not replace it
+        rows.addRow(new Object[]{14, 1000 * DAY});
+
+        DateIndexedCursor cursor = new DateIndexedCursor(rows, 1);
+        assertEquals("Error: indexing moved the cursor", -1, cursor.getPosition());
+        for (int i = 0; i < 14; i++) {
+            assertEquals(i, cursor.getPositionForDate(1000 * DAY + i * DAY));
+        }
+        assertEquals(RecyclerView.NO_POSITION, cursor.getPositionForDate(999 * DAY));
+        assertEquals(RecyclerView.NO_POSITION, cursor.getPositionForDate(1000 * DAY + 1));
+        cursor.close();
+    }
+
+    public void testEmptyCursor() {
+        DateIndexedCursor cursor =
+                new DateIndexedCursor(new MatrixCursor(new String[]{"_id", "date"}), 1);
+        assertEquals(RecyclerView.NO_POSITION, cursor.getPositionForDate(0));
+        cursor.close();
+    }
+}
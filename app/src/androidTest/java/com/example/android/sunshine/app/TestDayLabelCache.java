@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+
+import java.text.SimpleDateFormat;
+
+public class TestDayLabelCache extends AndroidTestCase {
+
+    private long dayFromToday(int days) {
+        Time time = new Time();
+        time.setToNow();
+        int today = Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+        return new Time().setJulianDay(today + days);
+    }
+
+    public void testLabelsInsideHorizon() {
+        DayLabelCache cache = DayLabelCache.getInstance(mContext);
+        cache.invalidate();
+
+        long today = dayFromToday(0);
+        String monthDay = new SimpleDateFormat("MMMM dd").format(today);
+        assertEquals(mContext.getString(R.string.today), cache.getDayName(today));
+        assertEquals(mContext.getString(R.string.format_full_friendly_date,
+                mContext.getString(R.string.today), monthDay),
+                cache.getFriendlyDayString(today, true));
+        assertEquals(monthDay, cache.getFormattedMonthDay(today));
+
+        long tomorrow = dayFromToday(1);
+        assertEquals(mContext.getString(R.string.tomorrow),
+                cache.getFriendlyDayString(tomorrow, true));
+
+        long inThreeDays = dayFromToday(3);
+        assertEquals(new SimpleDateFormat("EEEE").format(inThreeDays),
+                cache.getFriendlyDayString(inThreeDays, false));
+
+        long nextWeek = dayFromToday(9);
+        assertEquals(new SimpleDateFormat("EEE MMM dd").format(nextWeek),
+                cache.getFriendlyDayString(nextWeek, false));
+
+        // The same label object comes back every time inside the horizon
+        assertSame(cache.getFullFriendlyDayString(nextWeek),
+                cache.getFullFriendlyDayString(nextWeek + 60 * 60 * 1000));
+    }
+
+    public void testLabelsOutsideHorizon() {
+        DayLabelCache cache = DayLabelCache.getInstance(mContext);
+
+        long later = dayFromToday(DayLabelCache.FORECAST_HORIZON_DAYS + 5);
+        assertEquals(new SimpleDateFormat("EEE MMM dd").format(later),
+                cache.getFriendlyDayString(later, false));
+
+        long yesterday = dayFromToday(-1);
+        assertEquals(new SimpleDateFormat("EEEE").format(yesterday), cache.getDayName(yesterday));
+    }
+}
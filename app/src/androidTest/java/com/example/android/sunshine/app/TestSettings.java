@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+
+public class TestSettings extends AndroidTestCase {
+
+    public void testSnapshotMatchesPreferences() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        Settings settings = Settings.get(mContext);
+
+        assertEquals(prefs.getString(mContext.getString(R.string.pref_location_key),
+                mContext.getString(R.string.pref_location_default)), settings.location);
+        String metric = mContext.getString(R.string.pref_units_metric);
+        assertEquals(prefs.getString(mContext.getString(R.string.pref_units_key), metric)
+                .equals(metric), settings.isMetric);
+        String sunshineArtPack = mContext.getString(R.string.pref_art_pack_sunshine);
+        assertEquals(prefs.getString(mContext.getString(R.string.pref_art_pack_key),
+                sunshineArtPack), settings.artPackFormat);
+        assertEquals(settings.artPackFormat.equals(sunshineArtPack), settings.usingLocalGraphics);
+    }
+
+    public void testEditorPublishesBeforeDiskWrite() {
+        long lastNotification = Settings.get(mContext).lastNotification;
+        Settings.edit(mContext)
+                .putLocationStatus(SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN)
+                .putLastNotification(1234L)
+                .apply();
+
+        Settings settings = Settings.get(mContext);
+        assertEquals(SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN, settings.locationStatus);
+        assertEquals(1234L, settings.lastNotification);
+        assertEquals(SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN,
+                Utility.getLocationStatus(mContext));
+
+        Utility.resetLocationStatus(mContext);
+        assertEquals(SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN,
+                Settings.get(mContext).locationStatus);
+
+        Settings.edit(mContext).putLastNotification(lastNotification).apply();
+    }
+}
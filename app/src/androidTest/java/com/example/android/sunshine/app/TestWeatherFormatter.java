@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+public class TestWeatherFormatter extends AndroidTestCase {
+    private static final String LOG_TAG = TestWeatherFormatter.class.getSimpleName();
+
+    private static final int BENCHMARK_CALLS = 10000;
+
+    // What Utility.formatTemperature produced before it used the formatter
+    private String legacyTemperature(double temperature) {
+        if (!Utility.isMetric(mContext)) {
+            temperature = (temperature * 1.8) + 32;
+        }
+        return String.format(mContext.getString(R.string.format_temperature), temperature);
+    }
+
+    public void testTemperatureMatchesStringFormat() {
+        WeatherFormatter formatter = WeatherFormatter.getInstance(mContext);
+        for (double temperature = -70; temperature <= 70; temperature += 0.25) {
+            String expected = legacyTemperature(temperature);
+            // String.format keeps the sign of values that round to zero; the formatter doesn't.
+            if (expected.startsWith("-0")) {
+                expected = expected.substring(1);
+            }
+            assertEquals("Error: formatting " + temperature, expected,
+                    formatter.formatTemperature(temperature));
+        }
+    }
+
+    public void testWindDirections() {
+        assertEquals("N", WeatherFormatter.getDirection(0f));
+        assertEquals("N", WeatherFormatter.getDirection(350f));
+        assertEquals("NE", WeatherFormatter.getDirection(22.5f));
+        assertEquals("E", WeatherFormatter.getDirection(90f));
+        assertEquals("SE", WeatherFormatter.getDirection(157.4f));
+        assertEquals("S", WeatherFormatter.getDirection(157.5f));
+        assertEquals("SW", WeatherFormatter.getDirection(225f));
+        assertEquals("W", WeatherFormatter.getDirection(270f));
+        assertEquals("NW", WeatherFormatter.getDirection(337.4f));
+        assertEquals("Unknown", WeatherFormatter.getDirection(Float.NaN));
+    }
+
+    public void testRoundsHalfAwayFromZero() {
+        assertEquals(3, WeatherFormatter.round(2.5));
+        assertEquals(-3, WeatherFormatter.round(-2.5));
+        assertEquals(0, WeatherFormatter.round(-0.4));
+    }
+
+    @SuppressWarnings("deprecation")
+    public void testAllocationsPerCall() {
+        WeatherFormatter formatter = WeatherFormatter.getInstance(mContext);
+        // Fill the memo tables first; steady state is what matters on the bind path.
+        for (int i = 0; i < 100; i++) {
+            formatter.formatTemperature(i - 50);
+            formatter.formatWind(i, i * 3.6f);
+        }
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_CALLS; i++) {
+            formatter.formatTemperature((i % 100) - 50);
+            formatter.formatWind(i % 100, (i % 100) * 3.6f);
+        }
+        long formatterNanos = System.nanoTime() - start;
+        Debug.stopAllocCounting();
+        int formatterAllocations = Debug.getThreadAllocCount();
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_CALLS; i++) {
+            legacyTemperature((i % 100) - 50);
+        }
+        long legacyNanos = System.nanoTime() - start;
+        Debug.stopAllocCounting();
+        int legacyAllocations = Debug.getThreadAllocCount();
+
+        Log.i(LOG_TAG, "formatter: " + ((float) formatterAllocations / (2 * BENCHMARK_CALLS))
+                + " allocations/call, " + (formatterNanos / (2 * BENCHMARK_CALLS)) + " ns/call");
+        Log.i(LOG_TAG, "String.format: " + ((float) legacyAllocations / BENCHMARK_CALLS)
+                + " allocations/call, " + (legacyNanos / BENCHMARK_CALLS) + " ns/call");
+
+        assertTrue("Error: the formatter allocated " + formatterAllocations + " objects",
+                formatterAllocations < BENCHMARK_CALLS / 100);
+    }
+}
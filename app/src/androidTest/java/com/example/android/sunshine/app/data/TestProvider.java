@@ -27,6 +27,7 @@ import android.os.Build;
 import android.test.AndroidTestCase;
 import android.util.Log;
 
+import com.example.android.sunshine.app.data.WeatherContract.AlertEntry;
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
@@ -61,6 +62,11 @@ public class TestProvider extends AndroidTestCase {
                 null,
                 null
         );
+        mContext.getContentResolver().delete(
+                AlertEntry.CONTENT_URI,
+                null,
+                null
+        );
 
         Cursor cursor = mContext.getContentResolver().query(
                 WeatherEntry.CONTENT_URI,
@@ -512,4 +518,30 @@ public class TestProvider extends AndroidTestCase {
         }
         cursor.close();
     }
+
+    // A pushed alert that's already stored is ignored, and the provider says so.
+    public void testAlertDeduplication() {
+        ContentValues alertValues = new ContentValues();
+        alertValues.put(AlertEntry.COLUMN_DEDUP_KEY, "storm-1");
+        alertValues.put(AlertEntry.COLUMN_LOCATION_SETTING, TestUtilities.TEST_LOCATION);
+        alertValues.put(AlertEntry.COLUMN_MESSAGE, "Heads up: storm in North Pole!");
+        alertValues.put(AlertEntry.COLUMN_RECEIVED, TestUtilities.TEST_DATE);
+        alertValues.put(AlertEntry.COLUMN_EXPIRES, TestUtilities.TEST_DATE + 1000);
+
+        Uri alertUri = mContext.getContentResolver().insert(AlertEntry.CONTENT_URI, alertValues);
+        assertNotNull("Error: the first alert wasn't inserted", alertUri);
+        assertNull("Error: a repeated alert was inserted",
+                mContext.getContentResolver().insert(AlertEntry.CONTENT_URI, alertValues));
+
+        Cursor cursor = mContext.getContentResolver().query(
+                AlertEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                null
+        );
+        assertEquals("Error: expected one alert", 1, cursor.getCount());
+        TestUtilities.validateCursor("testAlertDeduplication. Error validating AlertEntry.",
+                cursor, alertValues);
+    }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.gcm;
+
+import android.content.ContentValues;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+public class TestForecastDelta extends AndroidTestCase {
+
+    private static final long NOW = System.currentTimeMillis();
+    private static final long TODAY = WeatherContract.normalizeDate(NOW);
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000;
+
+    private static String day(long date, double high, double low) {
+        return "[" + date + ",800," + high + "," + low + ",40,1013.5,3.2,270,\"Clear\"]";
+    }
+
+    private static String delta(String... days) {
+        StringBuilder json = new StringBuilder("{\"location\":\"94043\",\"days\":[");
+        for (int i = 0; i < days.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(days[i]);
+        }
+        return json.append("]}").toString();
+    }
+
+    public void testParsesValidDelta() {
+        long tomorrow = WeatherContract.normalizeDate(TODAY + DAY_IN_MILLIS + 1);
+        ForecastDelta delta = ForecastDelta.parse(
+                delta(day(TODAY, 21.5, 12), day(tomorrow, 19, 10)), NOW);
+
+        assertNotNull(delta);
+        assertEquals("94043", delta.locationSetting);
+        assertEquals(2, delta.days.length);
+        assertEquals(TODAY, delta.getFirstDate());
+        assertEquals(tomorrow, delta.getLastDate());
+
+        ContentValues today = delta.getDay(TODAY);
+        assertNotNull(today);
+        assertEquals(800, (int) today.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID));
+        assertEquals(21.5, today.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP));
+        assertEquals("Clear", today.getAsString(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC));
+        assertFalse(today.containsKey(WeatherContract.WeatherEntry.COLUMN_LOC_KEY));
+        assertNull(delta.getDay(TODAY - DAY_IN_MILLIS));
+    }
+
+    public void testRejectsInvalidDeltas() {
+        assertNull("Malformed JSON", ForecastDelta.parse("{\"location\":", NOW));
+        assertNull("No days", ForecastDelta.parse(delta(), NOW));
+        assertNull("Low above high", ForecastDelta.parse(delta(day(TODAY, 10, 20)), NOW));
+        assertNull("Unnormalized date", ForecastDelta.parse(delta(day(TODAY + 1, 21, 12)), NOW));
+        assertNull("Past date", ForecastDelta.parse(
+                delta(day(WeatherContract.normalizeDate(TODAY - DAY_IN_MILLIS), 21, 12)), NOW));
+        assertNull("Duplicate date", ForecastDelta.parse(
+                delta(day(TODAY, 21, 12), day(TODAY, 21, 12)), NOW));
+        assertNull("Short day", ForecastDelta.parse(
+                "{\"location\":\"94043\",\"days\":[[" + TODAY + ",800]]}", NOW));
+    }
+}
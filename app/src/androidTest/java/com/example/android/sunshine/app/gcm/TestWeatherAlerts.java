@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.gcm;
+
+import android.annotation.TargetApi;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Build;
+import android.service.notification.StatusBarNotification;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract.AlertEntry;
+import com.example.android.sunshine.app.utils.PollingCheck;
+
+public class TestWeatherAlerts extends AndroidTestCase {
+
+    private static final String LOCATION = "test_alert_location";
+    private static final String MESSAGE = "Storm warning";
+
+    private WeatherAlerts mAlerts;
+    private long mNow;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mAlerts = new WeatherAlerts(mContext);
+        mNow = System.currentTimeMillis();
+        mAlerts.removeExpired(Long.MAX_VALUE);
+        clearRateLimit();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        // Clears every stored alert and its notification, the test ones included
+        mAlerts.removeExpired(Long.MAX_VALUE);
+        clearRateLimit();
+        super.tearDown();
+    }
+
+    private void clearRateLimit() {
+        mContext.getSharedPreferences(WeatherAlerts.PREFS_NAME, Context.MODE_PRIVATE)
+                .edit().clear().commit();
+    }
+
+    private int countStored(String dedupKey) {
+        Cursor cursor = mContext.getContentResolver().query(AlertEntry.CONTENT_URI, null,
+                AlertEntry.COLUMN_DEDUP_KEY + " = ?", new String[]{dedupKey}, null);
+        assertNotNull(cursor);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    private int countActive(boolean summary) {
+        NotificationManager notificationManager =
+                (NotificationManager) mContext.getSystemService(Context.NOTIFICATION_SERVICE);
+        int count = 0;
+        for (StatusBarNotification notification : notificationManager.getActiveNotifications()) {
+            boolean isSummary = notification.getId() == MyGcmListenerService.NOTIFICATION_ID
+                    && notification.getTag() == null;
+            boolean isChild = WeatherAlerts.NOTIFICATION_TAG.equals(notification.getTag());
+            if (summary ? isSummary && notification.getNotification().number > 1 : isChild) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void testRateLimitedAlertPostsNoChild() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            // Active notifications can only be read from Marshmallow on
+            return;
+        }
+        assertTrue(mAlerts.post("burst-1-" + mNow, LOCATION, MESSAGE,
+                WeatherAlerts.DEFAULT_TTL_MILLIS, mNow));
+        new PollingCheck() {
+            @Override
+            protected boolean check() {
+                return countActive(false) == 1;
+            }
+        }.run();
+
+        assertTrue(mAlerts.post("burst-2-" + mNow, LOCATION, MESSAGE,
+                WeatherAlerts.DEFAULT_TTL_MILLIS, mNow + WeatherAlerts.RATE_LIMIT_MILLIS / 2));
+        // The summary is posted after the child would have been, so once it counts both alerts
+        // any child is there too
+        new PollingCheck() {
+            @Override
+            protected boolean check() {
+                return countActive(true) == 1;
+            }
+        }.run();
+        assertEquals(1, countActive(false));
+    }
+
+    public void testDropsRepeatedAlert() {
+        String key = "repeated-" + mNow;
+
+        assertTrue(mAlerts.post(key, LOCATION, MESSAGE, WeatherAlerts.DEFAULT_TTL_MILLIS, mNow));
+        assertFalse(mAlerts.post(key, LOCATION, MESSAGE, WeatherAlerts.DEFAULT_TTL_MILLIS,
+                mNow + 1000));
+        assertEquals(1, countStored(key));
+    }
+
+    public void testRateLimitsLocation() {
+        assertTrue(mAlerts.post("first-" + mNow, LOCATION, MESSAGE,
+                WeatherAlerts.DEFAULT_TTL_MILLIS, mNow));
+        assertEquals(mNow, mAlerts.getLastInterrupt(LOCATION));
+
+        // Inside the window: stored and shown, but doesn't interrupt
+        assertTrue(mAlerts.post("second-" + mNow, LOCATION, MESSAGE,
+                WeatherAlerts.DEFAULT_TTL_MILLIS, mNow + WeatherAlerts.RATE_LIMIT_MILLIS / 2));
+        assertEquals(mNow, mAlerts.getLastInterrupt(LOCATION));
+
+        long later = mNow + WeatherAlerts.RATE_LIMIT_MILLIS;
+        assertTrue(mAlerts.post("third-" + mNow, LOCATION, MESSAGE,
+                WeatherAlerts.DEFAULT_TTL_MILLIS, later));
+        assertEquals(later, mAlerts.getLastInterrupt(LOCATION));
+    }
+
+    public void testRateLimitOutlivesExpiredAlert() {
+        String first = "short-" + mNow;
+        assertTrue(mAlerts.post(first, LOCATION, MESSAGE, WeatherAlerts.MIN_TTL_MILLIS, mNow));
+
+        long next = mNow + 2 * WeatherAlerts.MIN_TTL_MILLIS;
+        assertTrue(mAlerts.post("next-" + mNow, LOCATION, MESSAGE,
+                WeatherAlerts.DEFAULT_TTL_MILLIS, next));
+        assertEquals(0, countStored(first));
+        assertEquals(mNow, mAlerts.getLastInterrupt(LOCATION));
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Intent;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.Utility;
+
+public class TestDataUpdateBus extends AndroidTestCase {
+
+    private Intent summary(String location, boolean todayChanged, boolean displayChanged) {
+        return new Intent(SunshineSyncAdapter.ACTION_DATA_UPDATED)
+                .putExtra(DataUpdateBus.EXTRA_LOCATIONS, new String[]{location})
+                .putExtra(DataUpdateBus.EXTRA_TODAY_CHANGED, todayChanged)
+                .putExtra(DataUpdateBus.EXTRA_DISPLAY_CHANGED, displayChanged);
+    }
+
+    public void testIntentWithoutSummaryConcernsEveryone() {
+        Intent intent = new Intent(SunshineSyncAdapter.ACTION_DATA_UPDATED);
+        assertTrue(DataUpdateBus.concernsForecast(mContext, intent));
+        assertTrue(DataUpdateBus.concernsToday(mContext, intent));
+    }
+
+    public void testOtherLocationIsSkipped() {
+        String other = Utility.getPreferredLocation(mContext) + "-elsewhere";
+        Intent intent = summary(other, true, false);
+        assertFalse(DataUpdateBus.concernsForecast(mContext, intent));
+        assertFalse(DataUpdateBus.concernsToday(mContext, intent));
+    }
+
+    public void testUnchangedTodayOnlyConcernsForecast() {
+        Intent intent = summary(Utility.getPreferredLocation(mContext), false, false);
+        assertTrue(DataUpdateBus.concernsForecast(mContext, intent));
+        assertFalse(DataUpdateBus.concernsToday(mContext, intent));
+    }
+
+    public void testDisplayChangeConcernsEveryone() {
+        String other = Utility.getPreferredLocation(mContext) + "-elsewhere";
+        Intent intent = summary(other, false, true);
+        assertTrue(DataUpdateBus.concernsForecast(mContext, intent));
+        assertTrue(DataUpdateBus.concernsToday(mContext, intent));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.support.v4.util.LongSparseArray;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * A cursor that knows the position of every date it holds.
+ *
+ * The index is built when the cursor is wrapped, which {@link DateIndexedCursorLoader} does on
+ * its background thread, so finding the row for a date on the main thread is a lookup instead
+ * of a walk over the rows.
+ */
+public class DateIndexedCursor extends CursorWrapper {
+
+    private final LongSparseArray<Integer> mPositionByDate;
+
+    /**
+     * @param cursor the rows to index. Its position is left before the first row.
+     * @param dateColumn index of the column holding each row's date
+     */
+    public DateIndexedCursor(Cursor cursor, int dateColumn) {
+        super(cursor);
+        int count = cursor.getCount();
+        mPositionByDate = new LongSparseArray<Integer>(count);
+        for (int position = 0; position < count; position++) {
+            cursor.moveToPosition(position);
+            long date = cursor.getLong(dateColumn);
+            // Keep the first row for a date, as a front-to-back scan would
+            if (mPositionByDate.get(date) == null) {
+                // Rows normally come sorted by date, which makes this an append
+                mPositionByDate.put(date, position);
+            }
+        }
+        cursor.moveToPosition(-1);
+    }
+
+    /**
+     * @return the position of the first row for the date, or RecyclerView.NO_POSITION if there
+     * is none.
+     */
+    public int getPositionForDate(long date) {
+        Integer position = mPositionByDate.get(date);
+        return position != null ? position : RecyclerView.NO_POSITION;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.v4.content.CursorLoader;
+
+/**
+ * A {@link CursorLoader} that delivers a {@link DateIndexedCursor}, indexed on the loader's
+ * background thread.
+ */
+public class DateIndexedCursorLoader extends CursorLoader {
+
+    private final int mDateColumn;
+
+    /**
+     * @param dateColumn index into projection of the column holding each row's date
+     */
+    public DateIndexedCursorLoader(Context context, Uri uri, String[] projection, String selection,
+            String[] selectionArgs, String sortOrder, int dateColumn) {
+        super(context, uri, projection, selection, selectionArgs, sortOrder);
+        mDateColumn = dateColumn;
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        Cursor cursor = super.loadInBackground();
+        if (cursor == null) {
+            return null;
+        }
+        return new DateIndexedCursor(cursor, mDateColumn);
+    }
+}
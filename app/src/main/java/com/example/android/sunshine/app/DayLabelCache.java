@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.text.format.Time;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+/**
+ * Day labels ("Today, June 24", "Tomorrow", "Wednesday", ...) for the forecast horizon, built
+ * once per day and locale.
+ *
+ * Labels are keyed by Julian day relative to today, so a lookup on the bind path is an index
+ * computation and an array read. The whole table is dropped when the day rolls over, which is
+ * detected both on lookup and by a midnight alarm, and when {@link DayLabelReceiver} sees the
+ * locale, time zone or clock change.
+ */
+public class DayLabelCache {
+
+    // The sync adapter fetches this many days, starting with today.
+    static final int FORECAST_HORIZON_DAYS = 14;
+
+    static final String ACTION_DAY_ROLLOVER =
+            "com.example.android.sunshine.app.ACTION_DAY_ROLLOVER";
+
+    private static DayLabelCache sInstance;
+
+    private final Context mContext;
+    private volatile Labels mLabels;
+
+    public static synchronized DayLabelCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new DayLabelCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private DayLabelCache(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Drops every label; the next lookup rebuilds them for the current day, locale and zone.
+     */
+    public void invalidate() {
+        mLabels = null;
+    }
+
+    private Labels labels() {
+        Labels labels = mLabels;
+        if (labels == null || labels.locale != Locale.getDefault()
+                || System.currentTimeMillis() >= labels.validUntil) {
+            labels = new Labels(mContext);
+            mLabels = labels;
+            scheduleRollover(labels.validUntil);
+        }
+        return labels;
+    }
+
+    private void scheduleRollover(long midnight) {
+        AlarmManager alarmManager = (AlarmManager) mContext.getSystemService(Context.ALARM_SERVICE);
+        Intent intent = new Intent(ACTION_DAY_ROLLOVER).setClass(mContext, DayLabelReceiver.class);
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(mContext, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT);
+        // Nobody needs new labels while the screen is off, so don't wake the device for them.
+        alarmManager.set(AlarmManager.RTC, midnight, pendingIntent);
+    }
+
+    /**
+     * @see Utility#getFriendlyDayString(Context, long, boolean)
+     */
+    public String getFriendlyDayString(long dateInMillis, boolean displayLongToday) {
+        Labels labels = labels();
+        int day = labels.dayIndex(dateInMillis);
+        if (displayLongToday && day == 0) {
+            return labels.longToday;
+        }
+        if (labels.inHorizon(day)) {
+            return labels.friendly[day];
+        }
+        return labels.buildFriendly(day, dateInMillis);
+    }
+
+    /**
+     * @see Utility#getFullFriendlyDayString(Context, long)
+     */
+    public String getFullFriendlyDayString(long dateInMillis) {
+        Labels labels = labels();
+        int day = labels.dayIndex(dateInMillis);
+        if (labels.inHorizon(day)) {
+            return labels.fullFriendly[day];
+        }
+        return labels.buildFullFriendly(day, dateInMillis);
+    }
+
+    /**
+     * @see Utility#getDayName(Context, long)
+     */
+    public String getDayName(long dateInMillis) {
+        Labels labels = labels();
+        int day = labels.dayIndex(dateInMillis);
+        if (labels.inHorizon(day)) {
+            return labels.dayName[day];
+        }
+        return labels.buildDayName(day, dateInMillis);
+    }
+
+    /**
+     * @see Utility#getFormattedMonthDay(Context, long)
+     */
+    public String getFormattedMonthDay(long dateInMillis) {
+        Labels labels = labels();
+        int day = labels.dayIndex(dateInMillis);
+        if (labels.inHorizon(day)) {
+            return labels.monthDay[day];
+        }
+        return labels.buildMonthDay(dateInMillis);
+    }
+
+    /**
+     * The labels for one day in one locale and time zone. Days are indexed relative to today.
+     */
+    private static final class Labels {
+        final Locale locale;
+        final long gmtoff;
+        final int todayJulianDay;
+        final long validUntil;
+
+        final String today;
+        final String tomorrow;
+        final String fullFriendlyFormat;
+
+        final String longToday;
+        final String[] friendly = new String[FORECAST_HORIZON_DAYS];
+        final String[] fullFriendly = new String[FORECAST_HORIZON_DAYS];
+        final String[] dayName = new String[FORECAST_HORIZON_DAYS];
+        final String[] monthDay = new String[FORECAST_HORIZON_DAYS];
+
+        // SimpleDateFormat isn't thread safe; the build methods are synchronized.
+        private final SimpleDateFormat mDayFormat;
+        private final SimpleDateFormat mMonthDayFormat;
+        private final SimpleDateFormat mShortenedDateFormat;
+
+        Labels(Context context) {
+            locale = Locale.getDefault();
+            Time time = new Time();
+            time.setToNow();
+            gmtoff = time.gmtoff;
+            todayJulianDay = Time.getJulianDay(System.currentTimeMillis(), gmtoff);
+            validUntil = new Time().setJulianDay(todayJulianDay + 1);
+
+            today = context.getString(R.string.today);
+            tomorrow = context.getString(R.string.tomorrow);
+            fullFriendlyFormat = context.getString(R.string.format_full_friendly_date);
+            mDayFormat = new SimpleDateFormat("EEEE", locale);
+            mMonthDayFormat = new SimpleDateFormat("MMMM dd", locale);
+            mShortenedDateFormat = new SimpleDateFormat("EEE MMM dd", locale);
+
+            Time dayTime = new Time();
+            for (int day = 0; day < FORECAST_HORIZON_DAYS; day++) {
+                // Local midnight of the day stands in for every timestamp that falls on it
+                long dateInMillis = dayTime.setJulianDay(todayJulianDay + day);
+                dayName[day] = buildDayName(day, dateInMillis);
+                monthDay[day] = buildMonthDay(dateInMillis);
+                friendly[day] = buildFriendly(day, dateInMillis);
+                fullFriendly[day] = String.format(fullFriendlyFormat, dayName[day], monthDay[day]);
+            }
+            longToday = String.format(fullFriendlyFormat, today, monthDay[0]);
+        }
+
+        int dayIndex(long dateInMillis) {
+            return Time.getJulianDay(dateInMillis, gmtoff) - todayJulianDay;
+        }
+
+        boolean inHorizon(int day) {
+            return day >= 0 && day < FORECAST_HORIZON_DAYS;
+        }
+
+        synchronized String buildFriendly(int day, long dateInMillis) {
+            // For the next 7 days: just the day name, "Today", "Tomorrow" or "Wednesday"
+            // For all days after that: "Mon Jun 8"
+            if (day < 7) {
+                return buildDayName(day, dateInMillis);
+            }
+            return mShortenedDateFormat.format(dateInMillis);
+        }
+
+        synchronized String buildFullFriendly(int day, long dateInMillis) {
+            return String.format(fullFriendlyFormat,
+                    buildDayName(day, dateInMillis), buildMonthDay(dateInMillis));
+        }
+
+        synchronized String buildDayName(int day, long dateInMillis) {
+            if (day == 0) {
+                return today;
+            } else if (day == 1) {
+                return tomorrow;
+            }
+            return mDayFormat.format(dateInMillis);
+        }
+
+        synchronized String buildMonthDay(long dateInMillis) {
+            return mMonthDayFormat.format(dateInMillis);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.sync.DataUpdateBus;
+
+/**
+ * Drops the cached day labels at midnight and whenever the locale, time zone or clock changes,
+ * then asks everything showing a date to redraw it.
+ */
+public class DayLabelReceiver extends BroadcastReceiver {
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        DayLabelCache.getInstance(context).invalidate();
+
+        // The forecast list reloads on a change to the weather uri, and the widgets on
+        // ACTION_DATA_UPDATED.
+        context.getContentResolver().notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
+        DataUpdateBus.getInstance(context).postDisplayChanged();
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+
+/**
+ * An immutable, typed copy of every preference the app reads outside the settings screen.
+ *
+ * One preference listener rebuilds the whole snapshot whenever anything changes and swaps it in
+ * with a single volatile write, so readers on any thread see either the old settings or the new
+ * ones, never a mix, and a read is a field access rather than a key lookup.
+ *
+ * Writes go through {@link Editor}, which collects changes, drops the ones that don't change
+ * anything, and hands the rest to {@link SharedPreferences.Editor#apply()} in one batch. The new
+ * snapshot is published before the editor returns, so the writer reads its own writes even though
+ * the disk write happens later.
+ */
+public final class Settings {
+
+    private static volatile Store sStore;
+
+    public final String location;
+    public final boolean isLocationLatLonAvailable;
+    public final float locationLatitude;
+    public final float locationLongitude;
+    public final @SunshineSyncAdapter.LocationStatus int locationStatus;
+
+    public final boolean isMetric;
+    public final String artPackFormat;
+    public final boolean usingLocalGraphics;
+
+    public final boolean notificationsEnabled;
+    public final long lastNotification;
+
+    public final long wearableForecastVersion;
+    public final int wearableForecastHash;
+
+    /**
+     * @return the current settings. Never null; cheap enough to call on every bind.
+     */
+    public static Settings get(Context context) {
+        return store(context).mSettings;
+    }
+
+    /**
+     * @return a new batch of changes, written when {@link Editor#apply()} is called.
+     */
+    public static Editor edit(Context context) {
+        return new Editor(store(context));
+    }
+
+    private static Store store(Context context) {
+        Store store = sStore;
+        if (store == null) {
+            synchronized (Settings.class) {
+                store = sStore;
+                if (store == null) {
+                    store = new Store(context.getApplicationContext());
+                    sStore = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    @SuppressWarnings("ResourceType")
+    private Settings(Store store, SharedPreferences prefs) {
+        location = prefs.getString(store.mLocationKey, store.mLocationDefault);
+        isLocationLatLonAvailable = prefs.contains(store.mLatitudeKey)
+                && prefs.contains(store.mLongitudeKey);
+        locationLatitude = prefs.getFloat(store.mLatitudeKey, Utility.DEFAULT_LATLONG);
+        locationLongitude = prefs.getFloat(store.mLongitudeKey, Utility.DEFAULT_LATLONG);
+        locationStatus = prefs.getInt(store.mLocationStatusKey,
+                SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN);
+
+        isMetric = prefs.getString(store.mUnitsKey, store.mUnitsMetric).equals(store.mUnitsMetric);
+        artPackFormat = prefs.getString(store.mArtPackKey, store.mArtPackSunshine);
+        usingLocalGraphics = artPackFormat.equals(store.mArtPackSunshine);
+
+        notificationsEnabled = prefs.getBoolean(store.mNotificationsKey,
+                store.mNotificationsDefault);
+        lastNotification = prefs.getLong(store.mLastNotificationKey, 0);
+
+        wearableForecastVersion = prefs.getLong(store.mWearableForecastVersionKey, 0);
+        wearableForecastHash = prefs.getInt(store.mWearableForecastHashKey, 0);
+    }
+
+    /**
+     * A batch of preference writes. Not thread safe; use one editor per batch.
+     */
+    public static final class Editor {
+        private final Store mStore;
+        private final SharedPreferences.Editor mEditor;
+        private boolean mChanged;
+
+        private Editor(Store store) {
+            mStore = store;
+            mEditor = store.mPrefs.edit();
+        }
+
+        public Editor putLocationStatus(@SunshineSyncAdapter.LocationStatus int locationStatus) {
+            if (locationStatus != mStore.mSettings.locationStatus) {
+                mEditor.putInt(mStore.mLocationStatusKey, locationStatus);
+                mChanged = true;
+            }
+            return this;
+        }
+
+        public Editor putLastNotification(long lastNotification) {
+            if (lastNotification != mStore.mSettings.lastNotification) {
+                mEditor.putLong(mStore.mLastNotificationKey, lastNotification);
+                mChanged = true;
+            }
+            return this;
+        }
+
+        public Editor putWearableForecast(long version, int contentHash) {
+            if (version != mStore.mSettings.wearableForecastVersion) {
+                mEditor.putLong(mStore.mWearableForecastVersionKey, version);
+                mChanged = true;
+            }
+            if (contentHash != mStore.mSettings.wearableForecastHash) {
+                mEditor.putInt(mStore.mWearableForecastHashKey, contentHash);
+                mChanged = true;
+            }
+            return this;
+        }
+
+        /**
+         * Publishes the batch in memory right away and schedules one asynchronous disk write.
+         * Safe to call from any thread, including the main thread.
+         */
+        public void apply() {
+            if (!mChanged) {
+                return;
+            }
+            mChanged = false;
+            mEditor.apply();
+            // apply() has already updated the preferences in memory, so this snapshot includes
+            // the batch. The listener will build an identical one when it's notified.
+            mStore.reload();
+        }
+    }
+
+    private static final class Store implements SharedPreferences.OnSharedPreferenceChangeListener {
+        final SharedPreferences mPrefs;
+
+        // Keys and defaults are resolved from resources once.
+        final String mLocationKey;
+        final String mLocationDefault;
+        final String mLatitudeKey;
+        final String mLongitudeKey;
+        final String mLocationStatusKey;
+        final String mUnitsKey;
+        final String mUnitsMetric;
+        final String mArtPackKey;
+        final String mArtPackSunshine;
+        final String mNotificationsKey;
+        final boolean mNotificationsDefault;
+        final String mLastNotificationKey;
+        final String mWearableForecastVersionKey;
+        final String mWearableForecastHashKey;
+
+        volatile Settings mSettings;
+
+        Store(Context context) {
+            mPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+            mLocationKey = context.getString(R.string.pref_location_key);
+            mLocationDefault = context.getString(R.string.pref_location_default);
+            mLatitudeKey = context.getString(R.string.pref_location_latitude);
+            mLongitudeKey = context.getString(R.string.pref_location_longitude);
+            mLocationStatusKey = context.getString(R.string.pref_location_status_key);
+            mUnitsKey = context.getString(R.string.pref_units_key);
+            mUnitsMetric = context.getString(R.string.pref_units_metric);
+            mArtPackKey = context.getString(R.string.pref_art_pack_key);
+            mArtPackSunshine = context.getString(R.string.pref_art_pack_sunshine);
+            mNotificationsKey = context.getString(R.string.pref_enable_notifications_key);
+            mNotificationsDefault = Boolean.parseBoolean(
+                    context.getString(R.string.pref_enable_notifications_default));
+            mLastNotificationKey = context.getString(R.string.pref_last_notification);
+            mWearableForecastVersionKey =
+                    context.getString(R.string.pref_wearable_forecast_version);
+            mWearableForecastHashKey = context.getString(R.string.pref_wearable_forecast_hash);
+
+            mSettings = new Settings(this, mPrefs);
+            // The preference manager only keeps a weak reference to its listeners; the store
+            // keeps this one alive.
+            mPrefs.registerOnSharedPreferenceChangeListener(this);
+        }
+
+        synchronized void reload() {
+            mSettings = new Settings(this, mPrefs);
+        }
+
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            reload();
+        }
+    }
+}
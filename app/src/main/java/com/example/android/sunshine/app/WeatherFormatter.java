@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+
+import java.util.Formatter;
+import java.util.Locale;
+
+/**
+ * Formats temperatures and wind for display.
+ *
+ * The unit preference and the localized format strings are read once into a snapshot, which is
+ * only rebuilt when {@link Settings} reports different units or the default locale changes.
+ * Values are rounded the same way "%1.0f" rounds them, and every rounded value in the common
+ * range is formatted once and then served from memory, so a list bind normally allocates nothing.
+ */
+public class WeatherFormatter {
+
+    // Rounded values in these ranges are memoized, in the user's units.
+    static final int MIN_CACHED_TEMPERATURE = -80;
+    static final int MAX_CACHED_TEMPERATURE = 140;
+    static final int MAX_CACHED_WIND_SPEED = 150;
+
+    private static final float KMH_TO_MPH = .621371192237334f;
+
+    private static final String[] DIRECTIONS = {"N", "NE", "E", "SE", "S", "SW", "W", "NW", "Unknown"};
+    private static final int DIRECTION_UNKNOWN = 8;
+
+    private static WeatherFormatter sInstance;
+
+    private final Context mContext;
+    private volatile Snapshot mSnapshot;
+
+    public static synchronized WeatherFormatter getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WeatherFormatter(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WeatherFormatter(Context context) {
+        mContext = context;
+        mSnapshot = new Snapshot(context, Settings.get(context).isMetric);
+    }
+
+    private Snapshot snapshot() {
+        Snapshot snapshot = mSnapshot;
+        // Settings are swapped as a whole by their own listener, so comparing the units here
+        // can't race with it the way a second listener could.
+        boolean isMetric = Settings.get(mContext).isMetric;
+        if (snapshot.locale != Locale.getDefault() || snapshot.isMetric != isMetric) {
+            snapshot = new Snapshot(mContext, isMetric);
+            mSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    public boolean isMetric() {
+        return snapshot().isMetric;
+    }
+
+    /**
+     * @param temperature temperature in Celsius, as stored in the database
+     * @return the temperature in the user's units, e.g "21°"
+     */
+    public String formatTemperature(double temperature) {
+        Snapshot snapshot = snapshot();
+        if (!snapshot.isMetric) {
+            temperature = (temperature * 1.8) + 32;
+        }
+        return snapshot.temperature(round(temperature));
+    }
+
+    /**
+     * @param windSpeed wind speed in km/h, as stored in the database
+     * @param degrees meteorological degrees, 0 is north
+     * @return the wind in the user's units with a compass direction, e.g "12 km/h NW"
+     */
+    public String formatWind(float windSpeed, float degrees) {
+        Snapshot snapshot = snapshot();
+        if (!snapshot.isMetric) {
+            windSpeed = KMH_TO_MPH * windSpeed;
+        }
+        return snapshot.wind(round(windSpeed), getDirectionIndex(degrees));
+    }
+
+    /**
+     * @return the compass direction, e.g "NW", for meteorological degrees.
+     */
+    public static String getDirection(float degrees) {
+        return DIRECTIONS[getDirectionIndex(degrees)];
+    }
+
+    private static int getDirectionIndex(float degrees) {
+        if (degrees >= 337.5 || degrees < 22.5) {
+            return 0;
+        } else if (degrees >= 22.5 && degrees < 337.5) {
+            // Each of the remaining seven points covers 45 degrees, starting at 22.5
+            return 1 + (int) ((degrees - 22.5f) / 45f);
+        }
+        // Only NaN gets here
+        return DIRECTION_UNKNOWN;
+    }
+
+    // Rounds half away from zero, which is what "%1.0f" does.
+    static long round(double value) {
+        long magnitude = (long) Math.floor(Math.abs(value) + 0.5);
+        return value < 0 ? -magnitude : magnitude;
+    }
+
+    /**
+     * Everything the formatter reads from preferences and resources, plus the strings it has
+     * produced with them. Replaced as a whole, never mutated except to fill in the memo tables.
+     */
+    private static final class Snapshot {
+        final Locale locale;
+        final boolean isMetric;
+        final String temperatureFormat;
+        final String windFormat;
+
+        final String[] temperatures =
+                new String[MAX_CACHED_TEMPERATURE - MIN_CACHED_TEMPERATURE + 1];
+        final String[][] winds = new String[DIRECTIONS.length][MAX_CACHED_WIND_SPEED + 1];
+
+        // Reused for every string this snapshot builds
+        private final StringBuilder mBuilder = new StringBuilder(24);
+        private final Formatter mFormatter;
+
+        Snapshot(Context context, boolean isMetric) {
+            locale = Locale.getDefault();
+            this.isMetric = isMetric;
+            temperatureFormat = context.getString(R.string.format_temperature);
+            windFormat = context.getString(isMetric
+                    ? R.string.format_wind_kmh : R.string.format_wind_mph);
+            mFormatter = new Formatter(mBuilder, locale);
+        }
+
+        String temperature(long rounded) {
+            if (rounded < MIN_CACHED_TEMPERATURE || rounded > MAX_CACHED_TEMPERATURE) {
+                return format(temperatureFormat, (double) rounded, null);
+            }
+            int index = (int) rounded - MIN_CACHED_TEMPERATURE;
+            String cached = temperatures[index];
+            if (cached == null) {
+                cached = format(temperatureFormat, (double) rounded, null);
+                temperatures[index] = cached;
+            }
+            return cached;
+        }
+
+        String wind(long rounded, int direction) {
+            if (rounded < 0 || rounded > MAX_CACHED_WIND_SPEED) {
+                return format(windFormat, (double) rounded, DIRECTIONS[direction]);
+            }
+            String[] column = winds[direction];
+            String cached = column[(int) rounded];
+            if (cached == null) {
+                cached = format(windFormat, (double) rounded, DIRECTIONS[direction]);
+                column[(int) rounded] = cached;
+            }
+            return cached;
+        }
+
+        private synchronized String format(String format, double value, String direction) {
+            mBuilder.setLength(0);
+            if (direction == null) {
+                mFormatter.format(format, value);
+            } else {
+                mFormatter.format(format, value, direction);
+            }
+            return mBuilder.toString();
+        }
+    }
+}
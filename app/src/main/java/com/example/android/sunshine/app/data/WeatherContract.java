@@ -43,6 +43,7 @@ public class WeatherContract {
     // At least, let's hope not.  Don't be that dev, reader.  Don't be that dev.
     public static final String PATH_WEATHER = "weather";
     public static final String PATH_LOCATION = "location";
+    public static final String PATH_ALERT = "alert";
 
     // To make it easy to query for the exact date, we normalize all dates that go into
     // the database to the start of the the Julian day at UTC.
@@ -165,4 +166,33 @@ public class WeatherContract {
                 return 0;
         }
     }
+
+    /* Inner class that defines the table contents of the alert table */
+    public static final class AlertEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_ALERT).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_ALERT;
+
+        public static final String TABLE_NAME = "alert";
+
+        // Identifies the alert across repeated pushes, so each one is only shown once
+        public static final String COLUMN_DEDUP_KEY = "dedup_key";
+
+        // The location setting the alert was issued for
+        public static final String COLUMN_LOCATION_SETTING = "location_setting";
+
+        // The text shown to the user
+        public static final String COLUMN_MESSAGE = "message";
+
+        // When the alert arrived and when it stops being relevant, in milliseconds since the epoch
+        public static final String COLUMN_RECEIVED = "received";
+        public static final String COLUMN_EXPIRES = "expires";
+
+        public static Uri buildAlertUri(long id) {
+            return ContentUris.withAppendedId(CONTENT_URI, id);
+        }
+    }
 }
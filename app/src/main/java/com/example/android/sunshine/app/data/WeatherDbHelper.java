@@ -19,6 +19,7 @@ import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import com.example.android.sunshine.app.data.WeatherContract.AlertEntry;
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
@@ -28,7 +29,7 @@ import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
     // If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 2;
+    private static final int DATABASE_VERSION = 3;
 
     static final String DATABASE_NAME = "weather.db";
 
@@ -79,8 +80,20 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
                 " UNIQUE (" + WeatherEntry.COLUMN_DATE + ", " +
                 WeatherEntry.COLUMN_LOC_KEY + ") ON CONFLICT REPLACE);";
 
+        // Pushed alerts. The same alert is often pushed more than once, so a repeated dedup key
+        // is ignored rather than stored twice.
+        final String SQL_CREATE_ALERT_TABLE = "CREATE TABLE " + AlertEntry.TABLE_NAME + " (" +
+                AlertEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                AlertEntry.COLUMN_DEDUP_KEY + " TEXT NOT NULL, " +
+                AlertEntry.COLUMN_LOCATION_SETTING + " TEXT NOT NULL, " +
+                AlertEntry.COLUMN_MESSAGE + " TEXT NOT NULL, " +
+                AlertEntry.COLUMN_RECEIVED + " INTEGER NOT NULL, " +
+                AlertEntry.COLUMN_EXPIRES + " INTEGER NOT NULL, " +
+                " UNIQUE (" + AlertEntry.COLUMN_DEDUP_KEY + ") ON CONFLICT IGNORE);";
+
         sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_ALERT_TABLE);
     }
 
     @Override
@@ -93,6 +106,7 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
         // should be your top priority before modifying this method.
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + AlertEntry.TABLE_NAME);
         onCreate(sqLiteDatabase);
     }
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.gcm;
+
+import android.content.ContentValues;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The days of one location's forecast that changed on the server, as pushed over GCM.
+ *
+ * The payload is kept compact to stay well inside the GCM size limit: each day is a positional
+ * array rather than an object.
+ * <pre>
+ * {"location": "94043",
+ *  "days": [[date, weatherId, high, low, humidity, pressure, windSpeed, degrees, "description"],
+ *           ...]}
+ * </pre>
+ * Dates are in milliseconds, normalized the way {@link WeatherContract#normalizeDate(long)} does,
+ * temperatures in Celsius and wind speed in km/h, as they are stored. A delta is validated as a
+ * whole: if any day is malformed, none of it is applied.
+ */
+class ForecastDelta {
+    private static final String LOG_TAG = ForecastDelta.class.getSimpleName();
+
+    private static final String KEY_LOCATION = "location";
+    private static final String KEY_DAYS = "days";
+
+    // Positions within a day's array
+    private static final int DAY_DATE = 0;
+    private static final int DAY_WEATHER_ID = 1;
+    private static final int DAY_HIGH = 2;
+    private static final int DAY_LOW = 3;
+    private static final int DAY_HUMIDITY = 4;
+    private static final int DAY_PRESSURE = 5;
+    private static final int DAY_WIND_SPEED = 6;
+    private static final int DAY_DEGREES = 7;
+    private static final int DAY_DESCRIPTION = 8;
+    private static final int DAY_LENGTH = 9;
+
+    // The sync adapter keeps 14 days starting today; nothing outside them is accepted.
+    private static final int FORECAST_DAYS = 14;
+
+    final String locationSetting;
+    // Sorted by date, without the location key, which the receiver looks up
+    final ContentValues[] days;
+
+    private ForecastDelta(String locationSetting, ContentValues[] days) {
+        this.locationSetting = locationSetting;
+        this.days = days;
+    }
+
+    long getFirstDate() {
+        return days[0].getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+    }
+
+    long getLastDate() {
+        return days[days.length - 1].getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+    }
+
+    /**
+     * @return the values for the date if the delta changes it, otherwise null
+     */
+    ContentValues getDay(long date) {
+        for (ContentValues day : days) {
+            if (day.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE) == date) {
+                return day;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param json the message payload
+     * @param now the current time, which bounds the dates accepted
+     * @return the delta, or null if the payload isn't a valid one
+     */
+    static ForecastDelta parse(String json, long now) {
+        try {
+            JSONObject deltaJson = new JSONObject(json);
+            String locationSetting = deltaJson.getString(KEY_LOCATION);
+            JSONArray daysJson = deltaJson.getJSONArray(KEY_DAYS);
+            if (locationSetting.length() == 0 || daysJson.length() == 0
+                    || daysJson.length() > FORECAST_DAYS) {
+                Log.w(LOG_TAG, "Rejected delta for '" + locationSetting + "' with "
+                        + daysJson.length() + " days");
+                return null;
+            }
+
+            Time time = new Time();
+            time.set(now);
+            int todayJulianDay = Time.getJulianDay(now, time.gmtoff);
+            long firstDate = time.setJulianDay(todayJulianDay);
+            long lastDate = time.setJulianDay(todayJulianDay + FORECAST_DAYS - 1);
+
+            ContentValues[] days = new ContentValues[daysJson.length()];
+            long previousDate = Long.MIN_VALUE;
+            for (int i = 0; i < days.length; i++) {
+                JSONArray dayJson = daysJson.getJSONArray(i);
+                if (dayJson.length() != DAY_LENGTH) {
+                    Log.w(LOG_TAG, "Rejected delta for '" + locationSetting + "': bad day " + dayJson);
+                    return null;
+                }
+                long date = dayJson.getLong(DAY_DATE);
+                int weatherId = dayJson.getInt(DAY_WEATHER_ID);
+                double high = dayJson.getDouble(DAY_HIGH);
+                double low = dayJson.getDouble(DAY_LOW);
+                int humidity = dayJson.getInt(DAY_HUMIDITY);
+                double pressure = dayJson.getDouble(DAY_PRESSURE);
+                double windSpeed = dayJson.getDouble(DAY_WIND_SPEED);
+                double degrees = dayJson.getDouble(DAY_DEGREES);
+                String description = dayJson.getString(DAY_DESCRIPTION);
+
+                if (date != WeatherContract.normalizeDate(date)
+                        || date < firstDate || date > lastDate || date <= previousDate
+                        || weatherId < 200 || weatherId >= 1000
+                        || low > high || high > 70 || low < -100
+                        || humidity < 0 || humidity > 100
+                        || pressure <= 0 || windSpeed < 0
+                        || degrees < 0 || degrees > 360
+                        || description.length() == 0) {
+                    Log.w(LOG_TAG, "Rejected delta for '" + locationSetting + "': bad day " + dayJson);
+                    return null;
+                }
+                previousDate = date;
+
+                ContentValues weatherValues = new ContentValues();
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, date);
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, degrees);
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, description);
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
+                days[i] = weatherValues;
+            }
+            return new ForecastDelta(locationSetting, days);
+        } catch (JSONException e) {
+            Log.w(LOG_TAG, "Rejected malformed delta", e);
+            return null;
+        }
+    }
+}
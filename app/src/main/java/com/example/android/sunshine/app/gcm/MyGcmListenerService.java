@@ -16,19 +16,18 @@
 
 package com.example.android.sunshine.app.gcm;
 
-import android.app.NotificationManager;
-import android.app.PendingIntent;
-import android.content.Context;
-import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.content.ContentValues;
+import android.database.Cursor;
 import android.os.Bundle;
-import android.support.v4.app.NotificationCompat;
 import android.util.Log;
 import android.widget.Toast;
 
-import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.sync.DataUpdateBus;
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+import com.example.android.sunshine.app.wearable.WearablePublisher;
 import com.google.android.gms.gcm.GcmListenerService;
 
 import org.json.JSONException;
@@ -39,8 +38,12 @@ public class MyGcmListenerService extends GcmListenerService {
     private static final String TAG = "MyGcmListenerService";
 
     private static final String EXTRA_DATA = "data";
+    private static final String EXTRA_TYPE = "type";
+    private static final String TYPE_FORECAST_DELTA = "forecast_delta";
     private static final String EXTRA_WEATHER = "weather";
     private static final String EXTRA_LOCATION = "location";
+    private static final String EXTRA_ALERT_ID = "id";
+    private static final String EXTRA_TTL = "ttl";
 
     public static final int NOTIFICATION_ID = 1;
 
@@ -62,6 +65,10 @@ public class MyGcmListenerService extends GcmListenerService {
             }
             // Not a bad idea to check that the message is coming from your server.
             if ((senderId).equals(from)) {
+                if (TYPE_FORECAST_DELTA.equals(data.getString(EXTRA_TYPE))) {
+                    applyForecastDelta(data.getString(EXTRA_DATA));
+                    return;
+                }
                 // Process message and then post a notification of the received message.
                 try {
                     JSONObject jsonObject = new JSONObject(data.getString(EXTRA_DATA));
@@ -69,7 +76,11 @@ public class MyGcmListenerService extends GcmListenerService {
                     String location = jsonObject.getString(EXTRA_LOCATION);
                     String alert =
                             String.format(getString(R.string.gcm_weather_alert), weather, location);
-                    sendNotification(alert);
+                    // Servers that don't identify their alerts get them deduplicated by content
+                    String dedupKey =
+                            jsonObject.optString(EXTRA_ALERT_ID, location + "|" + weather);
+                    long ttlMillis = WeatherAlerts.getTtlMillis(jsonObject.optLong(EXTRA_TTL, -1));
+                    new WeatherAlerts(this).post(dedupKey, location, alert, ttlMillis);
                 } catch (JSONException e) {
                     // JSON parsing failed, so we just let this message go, since GCM is not one
                     // of our critical features.
@@ -80,31 +91,61 @@ public class MyGcmListenerService extends GcmListenerService {
     }
 
     /**
-     *  Put the message into a notification and post it.
-     *  This is just one simple example of what you might choose to do with a GCM message.
+     * Writes the days a forecast push changed, the same way a sync would, so that everything
+     * showing them updates without waiting for the next sync.
      *
-     * @param message The alert message to be posted.
+     * @param json the payload, see {@link ForecastDelta}
      */
-    private void sendNotification(String message) {
-        NotificationManager mNotificationManager =
-                (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-        PendingIntent contentIntent =
-                PendingIntent.getActivity(this, 0, new Intent(this, MainActivity.class), 0);
+    private void applyForecastDelta(String json) {
+        if (json == null) {
+            return;
+        }
+        ForecastDelta delta = ForecastDelta.parse(json, System.currentTimeMillis());
+        if (delta == null) {
+            return;
+        }
+
+        long locationId = getLocationId(delta.locationSetting);
+        if (locationId == -1) {
+            // We've never synced this location, so there's nothing to apply the delta to. If
+            // the user is waiting on it, fetch all of it.
+            if (delta.locationSetting.equals(Utility.getPreferredLocation(this))) {
+                SunshineSyncAdapter.syncImmediately(this);
+            }
+            return;
+        }
+        for (ContentValues day : delta.days) {
+            day.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
+        }
+        // One transaction; rows for the same day and location are replaced
+        int inserted = getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI,
+                delta.days);
+        Log.i(TAG, "Applied " + inserted + " pushed days for " + delta.locationSetting);
 
-        // Notifications using both a large and a small icon (which yours should!) need the large
-        // icon as a bitmap. So we need to create that here from the resource ID, and pass the
-        // object along in our notification builder. Generally, you want to use the app icon as the
-        // small icon, so that users understand what app is triggering this notification.
-        Bitmap largeIcon = BitmapFactory.decodeResource(this.getResources(), R.drawable.art_storm);
-        NotificationCompat.Builder mBuilder =
-                new NotificationCompat.Builder(this)
-                        .setSmallIcon(R.drawable.art_clear)
-                        .setLargeIcon(largeIcon)
-                        .setContentTitle("Weather Alert!")
-                        .setStyle(new NotificationCompat.BigTextStyle().bigText(message))
-                        .setContentText(message)
-                        .setPriority(NotificationCompat.PRIORITY_HIGH);
-        mBuilder.setContentIntent(contentIntent);
-        mNotificationManager.notify(NOTIFICATION_ID, mBuilder.build());
+        ContentValues today = delta.getDay(
+                WeatherContract.normalizeDate(System.currentTimeMillis()));
+        DataUpdateBus.getInstance(this).postDataChanged(delta.locationSetting,
+                delta.getFirstDate(), delta.getLastDate(), today != null);
+
+        // The watch keeps every day of the forecast, so any change to it is worth sending
+        if (delta.locationSetting.equals(Utility.getPreferredLocation(this))) {
+            WearablePublisher.getInstance(this).publishForecast();
+        }
+    }
+
+    private long getLocationId(String locationSetting) {
+        Cursor cursor = getContentResolver().query(WeatherContract.LocationEntry.CONTENT_URI,
+                new String[]{WeatherContract.LocationEntry._ID},
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{locationSetting},
+                null);
+        if (cursor == null) {
+            return -1;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app.gcm;
+
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.support.v4.app.NotificationCompat;
+import android.text.format.DateUtils;
+import android.util.Log;
+
+import com.example.android.sunshine.app.MainActivity;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.data.WeatherContract.AlertEntry;
+
+import java.util.Map;
+
+/**
+ * Stores pushed weather alerts and keeps their notifications in step with the store.
+ *
+ * An alert that is already stored is dropped, so a server retry or a burst of identical pushes
+ * shows one notification. Alerts are notified in one group, under a summary that lists the alerts
+ * still in effect; expired alerts are removed from both. Only the first alert for a location within
+ * {@link #RATE_LIMIT_MILLIS} gets a notification of its own, at high priority with sound and
+ * vibration. The rest are only added to the summary, which never alerts again when it's updated,
+ * so a burst interrupts the user once.
+ *
+ * The time of the last interrupting alert for each location is kept in preferences rather than
+ * read off the stored alerts, which can expire well inside the window.
+ */
+class WeatherAlerts {
+    private static final String LOG_TAG = WeatherAlerts.class.getSimpleName();
+
+    static final long DEFAULT_TTL_MILLIS = 6 * DateUtils.HOUR_IN_MILLIS;
+    static final long MIN_TTL_MILLIS = DateUtils.MINUTE_IN_MILLIS;
+    static final long MAX_TTL_MILLIS = DateUtils.DAY_IN_MILLIS;
+    static final long RATE_LIMIT_MILLIS = 15 * DateUtils.MINUTE_IN_MILLIS;
+
+    static final String PREFS_NAME = "weather_alerts";
+    private static final String KEY_LAST_INTERRUPT_PREFIX = "last_interrupt_";
+
+    private static final String GROUP_KEY = "weather_alerts";
+    static final String NOTIFICATION_TAG = "weather_alert";
+    // The summary keeps the id the single alert notification always used
+    private static final int SUMMARY_NOTIFICATION_ID = MyGcmListenerService.NOTIFICATION_ID;
+    // InboxStyle shows at most this many lines
+    private static final int SUMMARY_LINES = 5;
+
+    private static final String[] ALERT_COLUMNS = {
+            AlertEntry._ID,
+            AlertEntry.COLUMN_MESSAGE
+    };
+    private static final int COL_ALERT_ID = 0;
+    private static final int COL_ALERT_MESSAGE = 1;
+
+    private static Bitmap sAlertArt;
+
+    private final Context mContext;
+    private final NotificationManager mNotificationManager;
+
+    WeatherAlerts(Context context) {
+        mContext = context;
+        mNotificationManager =
+                (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+    }
+
+    /**
+     * The large icon is the same for every alert, so it's decoded once per process.
+     */
+    private static synchronized Bitmap getAlertArt(Resources resources) {
+        if (sAlertArt == null) {
+            sAlertArt = BitmapFactory.decodeResource(resources, R.drawable.art_storm);
+        }
+        return sAlertArt;
+    }
+
+    /**
+     * Clamps the time to live a push asked for.
+     *
+     * @param ttlSeconds the requested time to live, or a negative value for the default
+     */
+    static long getTtlMillis(long ttlSeconds) {
+        if (ttlSeconds < 0) {
+            return DEFAULT_TTL_MILLIS;
+        }
+        return Math.max(MIN_TTL_MILLIS,
+                Math.min(MAX_TTL_MILLIS, ttlSeconds * DateUtils.SECOND_IN_MILLIS));
+    }
+
+    /**
+     * Stores the alert and notifies the user about it, unless it's a duplicate.
+     *
+     * @param dedupKey identifies the alert across pushes
+     * @return true if the alert was new
+     */
+    boolean post(String dedupKey, String locationSetting, String message, long ttlMillis) {
+        return post(dedupKey, locationSetting, message, ttlMillis, System.currentTimeMillis());
+    }
+
+    /**
+     * @param now when the alert arrived
+     * @see #post(String, String, String, long)
+     */
+    boolean post(String dedupKey, String locationSetting, String message, long ttlMillis,
+            long now) {
+        removeExpired(now);
+
+        if (isStored(dedupKey)) {
+            Log.d(LOG_TAG, "Dropped repeated alert " + dedupKey);
+            return false;
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(AlertEntry.COLUMN_DEDUP_KEY, dedupKey);
+        values.put(AlertEntry.COLUMN_LOCATION_SETTING, locationSetting);
+        values.put(AlertEntry.COLUMN_MESSAGE, message);
+        values.put(AlertEntry.COLUMN_RECEIVED, now);
+        values.put(AlertEntry.COLUMN_EXPIRES, now + ttlMillis);
+        Uri alertUri = mContext.getContentResolver().insert(AlertEntry.CONTENT_URI, values);
+        if (alertUri == null) {
+            // Stored by a concurrent push between the check and the insert
+            return false;
+        }
+
+        if (claimInterrupt(locationSetting, now)) {
+            mNotificationManager.notify(NOTIFICATION_TAG, (int) ContentUris.parseId(alertUri),
+                    buildNotification(message)
+                            .setDefaults(NotificationCompat.DEFAULT_ALL)
+                            .setPriority(NotificationCompat.PRIORITY_HIGH)
+                            .setGroup(GROUP_KEY)
+                            .build());
+        } else {
+            Log.d(LOG_TAG, "Rate limited alert for " + locationSetting + "; summary only");
+        }
+        notifySummary();
+        return true;
+    }
+
+    private boolean isStored(String dedupKey) {
+        Cursor cursor = mContext.getContentResolver().query(AlertEntry.CONTENT_URI,
+                new String[]{AlertEntry._ID},
+                AlertEntry.COLUMN_DEDUP_KEY + " = ?",
+                new String[]{dedupKey},
+                null);
+        if (cursor == null) {
+            return false;
+        }
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return when an alert for the location last interrupted the user, or -1 if none has
+     */
+    long getLastInterrupt(String locationSetting) {
+        return getPrefs(mContext).getLong(KEY_LAST_INTERRUPT_PREFIX + locationSetting, -1);
+    }
+
+    /**
+     * Records an interrupting alert for the location, unless there already was one within
+     * {@link #RATE_LIMIT_MILLIS}.
+     *
+     * @return true if this alert may interrupt the user
+     */
+    private boolean claimInterrupt(String locationSetting, long now) {
+        long lastInterrupt = getLastInterrupt(locationSetting);
+        if (lastInterrupt != -1 && now - lastInterrupt < RATE_LIMIT_MILLIS) {
+            return false;
+        }
+        SharedPreferences prefs = getPrefs(mContext);
+        SharedPreferences.Editor editor = prefs.edit();
+        // Entries past the window don't limit anything any more
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Long && now - (Long) value >= RATE_LIMIT_MILLIS) {
+                editor.remove(entry.getKey());
+            }
+        }
+        editor.putLong(KEY_LAST_INTERRUPT_PREFIX + locationSetting, now);
+        editor.apply();
+        return true;
+    }
+
+    /**
+     * Cancels the notifications of the alerts expired by now and deletes them, updating the
+     * summary quietly if any were.
+     */
+    void removeExpired(long now) {
+        String selection = AlertEntry.COLUMN_EXPIRES + " <= ?";
+        String[] selectionArgs = new String[]{Long.toString(now)};
+        Cursor cursor = mContext.getContentResolver().query(AlertEntry.CONTENT_URI,
+                ALERT_COLUMNS, selection, selectionArgs, null);
+        if (cursor == null) {
+            return;
+        }
+        try {
+            if (cursor.getCount() == 0) {
+                return;
+            }
+            while (cursor.moveToNext()) {
+                mNotificationManager.cancel(NOTIFICATION_TAG, cursor.getInt(COL_ALERT_ID));
+            }
+        } finally {
+            cursor.close();
+        }
+        mContext.getContentResolver().delete(AlertEntry.CONTENT_URI, selection, selectionArgs);
+        notifySummary();
+    }
+
+    /**
+     * Posts or updates the summary quietly; only a new alert's own notification interrupts.
+     */
+    private void notifySummary() {
+        Cursor cursor = mContext.getContentResolver().query(AlertEntry.CONTENT_URI,
+                ALERT_COLUMNS, null, null, AlertEntry.COLUMN_RECEIVED + " DESC");
+        if (cursor == null) {
+            return;
+        }
+        try {
+            int count = cursor.getCount();
+            if (count == 0) {
+                mNotificationManager.cancel(SUMMARY_NOTIFICATION_ID);
+                return;
+            }
+            cursor.moveToFirst();
+            String latest = cursor.getString(COL_ALERT_MESSAGE);
+            NotificationCompat.Builder builder = buildNotification(latest);
+            if (count > 1) {
+                String title = mContext.getResources().getQuantityString(
+                        R.plurals.gcm_weather_alert_summary, count, count);
+                NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle()
+                        .setBigContentTitle(title);
+                int lines = 0;
+                do {
+                    style.addLine(cursor.getString(COL_ALERT_MESSAGE));
+                } while (++lines < SUMMARY_LINES && cursor.moveToNext());
+                builder.setContentTitle(title)
+                        .setNumber(count)
+                        .setStyle(style);
+            }
+            mNotificationManager.notify(SUMMARY_NOTIFICATION_ID, builder
+                    .setOnlyAlertOnce(true)
+                    .setGroup(GROUP_KEY)
+                    .setGroupSummary(true)
+                    .build());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private NotificationCompat.Builder buildNotification(String message) {
+        PendingIntent contentIntent =
+                PendingIntent.getActivity(mContext, 0, new Intent(mContext, MainActivity.class), 0);
+
+        // Notifications using both a large and a small icon (which yours should!) need the large
+        // icon as a bitmap. Generally, you want to use the app icon as the small icon, so that
+        // users understand what app is triggering this notification.
+        return new NotificationCompat.Builder(mContext)
+                .setSmallIcon(R.drawable.art_clear)
+                .setLargeIcon(getAlertArt(mContext.getResources()))
+                .setContentTitle(mContext.getString(R.string.gcm_weather_alert_title))
+                .setStyle(new NotificationCompat.BigTextStyle().bigText(message))
+                .setContentText(message)
+                .setContentIntent(contentIntent);
+    }
+}
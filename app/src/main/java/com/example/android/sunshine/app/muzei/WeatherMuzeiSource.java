@@ -18,18 +18,35 @@ package com.example.android.sunshine.app.muzei;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
+import android.support.v4.content.FileProvider;
+import android.util.Log;
 
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.target.Target;
 import com.example.android.sunshine.app.MainActivity;
+import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.sync.DataUpdateBus;
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
 import com.google.android.apps.muzei.api.Artwork;
 import com.google.android.apps.muzei.api.MuzeiArtSource;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+
 /**
  * Muzei source that changes your background based on the current weather conditions
  */
 public class WeatherMuzeiSource extends MuzeiArtSource {
+    private static final String LOG_TAG = WeatherMuzeiSource.class.getSimpleName();
+
     private static final String[] FORECAST_COLUMNS = new String[]{
             WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
             WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
@@ -38,6 +55,10 @@ public class WeatherMuzeiSource extends MuzeiArtSource {
     private static final int INDEX_WEATHER_ID = 0;
     private static final int INDEX_SHORT_DESC = 1;
 
+    // Cached photographs live in this directory under getFilesDir(), named after their url
+    private static final String ARTWORK_DIR = "muzei";
+    private static final String MUZEI_PACKAGE = "net.nurik.roman.muzei";
+
     public WeatherMuzeiSource() {
         super("WeatherMuzeiSource");
     }
@@ -46,7 +67,8 @@ public class WeatherMuzeiSource extends MuzeiArtSource {
     protected void onHandleIntent(Intent intent) {
         super.onHandleIntent(intent);
         boolean dataUpdated = intent != null &&
-                SunshineSyncAdapter.ACTION_DATA_UPDATED.equals(intent.getAction());
+                SunshineSyncAdapter.ACTION_DATA_UPDATED.equals(intent.getAction()) &&
+                DataUpdateBus.concernsToday(this, intent);
         if (dataUpdated && isEnabled()) {
             onUpdate(UPDATE_REASON_OTHER);
         }
@@ -59,6 +81,9 @@ public class WeatherMuzeiSource extends MuzeiArtSource {
                 location, System.currentTimeMillis());
         Cursor cursor = getContentResolver().query(weatherForLocationUri, FORECAST_COLUMNS, null,
                 null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor == null) {
+            return;
+        }
         if (cursor.moveToFirst()) {
             int weatherId = cursor.getInt(INDEX_WEATHER_ID);
             String desc = cursor.getString(INDEX_SHORT_DESC);
@@ -66,14 +91,86 @@ public class WeatherMuzeiSource extends MuzeiArtSource {
             String imageUrl = Utility.getImageUrlForWeatherCondition(weatherId);
             // Only publish a new wallpaper if we have a valid image
             if (imageUrl != null) {
-                publishArtwork(new Artwork.Builder()
-                        .imageUri(Uri.parse(imageUrl))
-                        .title(desc)
-                        .byline(location)
-                        .viewIntent(new Intent(this, MainActivity.class))
-                        .build());
+                Uri imageUri = getArtworkUri(imageUrl);
+                // Every code in a category shares a photograph (tornadoes have their own), so
+                // the token only changes with the photograph or the location. Muzei would
+                // otherwise fetch and crop the same image again on every sync.
+                String token = location + "|" + imageUri;
+                Artwork currentArtwork = getCurrentArtwork();
+                if (currentArtwork == null || !token.equals(currentArtwork.getToken())) {
+                    publishArtwork(new Artwork.Builder()
+                            .imageUri(imageUri)
+                            .title(desc)
+                            .byline(location)
+                            .token(token)
+                            .viewIntent(new Intent(this, MainActivity.class))
+                            .build());
+                }
             }
         }
         cursor.close();
     }
+
+    /**
+     * @return a content uri for a copy of the image in our own files, downloading it the first
+     * time it's needed, or the remote uri if it can't be downloaded right now.
+     */
+    private Uri getArtworkUri(String imageUrl) {
+        File artworkDir = new File(getFilesDir(), ARTWORK_DIR);
+        File artwork = new File(artworkDir, Uri.parse(imageUrl).getLastPathSegment());
+        if (!artwork.exists() && !downloadArtwork(imageUrl, artwork)) {
+            return Uri.parse(imageUrl);
+        }
+        Uri artworkUri = FileProvider.getUriForFile(this,
+                getString(R.string.muzei_artwork_authority), artwork);
+        // Our provider isn't exported; Muzei reads the image through this grant.
+        grantUriPermission(MUZEI_PACKAGE, artworkUri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        return artworkUri;
+    }
+
+    private boolean downloadArtwork(String imageUrl, File artwork) {
+        File artworkDir = artwork.getParentFile();
+        if (!artworkDir.isDirectory() && !artworkDir.mkdirs()) {
+            Log.e(LOG_TAG, "Couldn't create " + artworkDir);
+            return false;
+        }
+        // Write to a temporary file first so a failed download never leaves a partial image
+        // where the next update would take it for a complete one.
+        File partial = new File(artworkDir, artwork.getName() + ".partial");
+        InputStream in = null;
+        OutputStream out = null;
+        try {
+            File downloaded = Glide.with(this)
+                    .load(imageUrl)
+                    .downloadOnly(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL)
+                    .get();
+            in = new FileInputStream(downloaded);
+            out = new FileOutputStream(partial);
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            out.close();
+            out = null;
+            return partial.renameTo(artwork);
+        } catch (InterruptedException | ExecutionException | IOException e) {
+            Log.e(LOG_TAG, "Error caching artwork from " + imageUrl, e);
+            return false;
+        } finally {
+            closeQuietly(in);
+            closeQuietly(out);
+            partial.delete();
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing left to do with it
+            }
+        }
+    }
 }
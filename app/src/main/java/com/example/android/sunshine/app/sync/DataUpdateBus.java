@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Collects the data change signals raised within a short window and sends them as a single
+ * {@link SunshineSyncAdapter#ACTION_DATA_UPDATED} broadcast to the widgets, and a single intent to
+ * the Muzei source.
+ *
+ * The intent carries a summary of what changed: which locations, the range of dates written,
+ * whether today's row changed, and whether the way data is displayed changed (units, art pack, the
+ * day rolling over). Receivers use {@link #concernsForecast(Context, Intent)} and
+ * {@link #concernsToday(Context, Intent)} to skip updates that can't change what they show.
+ */
+public class DataUpdateBus {
+
+    // Long enough to merge the writes of one sync, short enough not to be noticed
+    static final long DEBOUNCE_MILLIS = 250;
+
+    public static final String EXTRA_LOCATIONS =
+            "com.example.android.sunshine.app.extra.LOCATIONS";
+    public static final String EXTRA_FIRST_DATE =
+            "com.example.android.sunshine.app.extra.FIRST_DATE";
+    public static final String EXTRA_LAST_DATE =
+            "com.example.android.sunshine.app.extra.LAST_DATE";
+    public static final String EXTRA_TODAY_CHANGED =
+            "com.example.android.sunshine.app.extra.TODAY_CHANGED";
+    public static final String EXTRA_DISPLAY_CHANGED =
+            "com.example.android.sunshine.app.extra.DISPLAY_CHANGED";
+
+    private static DataUpdateBus sInstance;
+
+    private final Context mContext;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    // The summary being collected, guarded by this
+    private final Set<String> mLocations = new LinkedHashSet<String>();
+    private long mFirstDate = Long.MAX_VALUE;
+    private long mLastDate = Long.MIN_VALUE;
+    private boolean mTodayChanged;
+    private boolean mDisplayChanged;
+    private boolean mPending;
+
+    private final Runnable mDispatch = new Runnable() {
+        @Override
+        public void run() {
+            dispatch();
+        }
+    };
+
+    public static synchronized DataUpdateBus getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new DataUpdateBus(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private DataUpdateBus(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Records that weather rows were written for a location. May be called from any thread.
+     *
+     * @param locationSetting the location the rows belong to
+     * @param firstDate the earliest date written
+     * @param lastDate the latest date written
+     * @param todayChanged whether what's shown for today is different from before
+     */
+    public synchronized void postDataChanged(String locationSetting, long firstDate,
+                                             long lastDate, boolean todayChanged) {
+        mLocations.add(locationSetting);
+        mFirstDate = Math.min(mFirstDate, firstDate);
+        mLastDate = Math.max(mLastDate, lastDate);
+        mTodayChanged |= todayChanged;
+        schedule();
+    }
+
+    /**
+     * Records that the data is unchanged but everything showing it has to be redrawn, for
+     * example because the units or the day changed. May be called from any thread.
+     */
+    public synchronized void postDisplayChanged() {
+        mDisplayChanged = true;
+        schedule();
+    }
+
+    private void schedule() {
+        // The window starts at the first signal and isn't extended by later ones, so a steady
+        // stream of changes still gets dispatched.
+        if (!mPending) {
+            mPending = true;
+            mHandler.postDelayed(mDispatch, DEBOUNCE_MILLIS);
+        }
+    }
+
+    private void dispatch() {
+        Intent dataUpdatedIntent = new Intent(SunshineSyncAdapter.ACTION_DATA_UPDATED);
+        synchronized (this) {
+            mPending = false;
+            dataUpdatedIntent
+                    .putExtra(EXTRA_LOCATIONS, mLocations.toArray(new String[mLocations.size()]))
+                    .putExtra(EXTRA_TODAY_CHANGED, mTodayChanged)
+                    .putExtra(EXTRA_DISPLAY_CHANGED, mDisplayChanged);
+            if (!mLocations.isEmpty()) {
+                dataUpdatedIntent
+                        .putExtra(EXTRA_FIRST_DATE, mFirstDate)
+                        .putExtra(EXTRA_LAST_DATE, mLastDate);
+            }
+            mLocations.clear();
+            mFirstDate = Long.MAX_VALUE;
+            mLastDate = Long.MIN_VALUE;
+            mTodayChanged = false;
+            mDisplayChanged = false;
+        }
+
+        // Setting the package ensures that only components in our app will receive the broadcast
+        mContext.sendBroadcast(new Intent(dataUpdatedIntent).setPackage(mContext.getPackageName()));
+
+        // Muzei is only compatible with Jelly Bean MR1+ devices, so there's no need to update the
+        // Muzei background on lower API level devices
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            mContext.startService(dataUpdatedIntent.setClass(mContext, WeatherMuzeiSource.class));
+        }
+    }
+
+    /**
+     * @return true unless the intent's summary shows that nothing the user is looking at changed:
+     * the preferred location's forecast wasn't written and nothing needs redrawing. An intent
+     * without a summary concerns everyone.
+     */
+    public static boolean concernsForecast(Context context, Intent intent) {
+        if (!intent.hasExtra(EXTRA_LOCATIONS) || intent.getBooleanExtra(EXTRA_DISPLAY_CHANGED, false)) {
+            return true;
+        }
+        String preferredLocation = Utility.getPreferredLocation(context);
+        for (String location : intent.getStringArrayExtra(EXTRA_LOCATIONS)) {
+            if (preferredLocation.equals(location)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if what's shown for today at the preferred location may have changed. An
+     * intent without a summary concerns everyone.
+     */
+    public static boolean concernsToday(Context context, Intent intent) {
+        if (!intent.hasExtra(EXTRA_LOCATIONS) || intent.getBooleanExtra(EXTRA_DISPLAY_CHANGED, false)) {
+            return true;
+        }
+        return intent.getBooleanExtra(EXTRA_TODAY_CHANGED, true) && concernsForecast(context, intent);
+    }
+}
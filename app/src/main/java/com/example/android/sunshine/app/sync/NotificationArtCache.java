@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.ConnectivityManager;
+import android.support.v4.net.ConnectivityManagerCompat;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.example.android.sunshine.app.Settings;
+import com.example.android.sunshine.shared.WeatherConditions;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Notification art, scaled to the large icon size and kept on disk.
+ *
+ * Art is stored per (condition category, size) in a directory for the current art pack, so a
+ * notification normally costs one small file decode. Art packs are only downloaded on unmetered
+ * networks; until then, and whenever a download fails, the bundled art is used.
+ */
+class NotificationArtCache {
+    private static final String LOG_TAG = NotificationArtCache.class.getSimpleName();
+
+    private static final String CACHE_DIR = "notification_art";
+    // Directory name for the bundled art, which doesn't depend on the art pack
+    private static final String LOCAL_ART_DIR = "local";
+
+    private final Context mContext;
+
+    NotificationArtCache(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    static boolean isUnmeteredNetwork(Context context) {
+        ConnectivityManager cm =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        return cm.getActiveNetworkInfo() != null
+                && cm.getActiveNetworkInfo().isConnected()
+                && !ConnectivityManagerCompat.isActiveNetworkMetered(cm);
+    }
+
+    private File getArtPackDir(Settings settings) {
+        String name = settings.usingLocalGraphics
+                ? LOCAL_ART_DIR : Integer.toHexString(settings.artPackFormat.hashCode());
+        return new File(new File(mContext.getCacheDir(), CACHE_DIR), name);
+    }
+
+    private File getLocalArtDir() {
+        return new File(new File(mContext.getCacheDir(), CACHE_DIR), LOCAL_ART_DIR);
+    }
+
+    private static File getArtFile(File artPackDir, int category, int width, int height) {
+        return new File(artPackDir, category + "_" + width + "x" + height + ".png");
+    }
+
+    /**
+     * Returns the art for the condition, scaled to fit width x height. Blocks on disk and, on an
+     * unmetered network, on the download; never call it from the main thread.
+     *
+     * @return the art, or null if the condition has none.
+     */
+    Bitmap get(int weatherId, int width, int height) {
+        int category = WeatherConditions.getCategory(weatherId);
+        if (category == WeatherConditions.CATEGORY_NONE) {
+            return null;
+        }
+        Settings settings = Settings.get(mContext);
+        File artFile = getArtFile(getArtPackDir(settings), category, width, height);
+        if (artFile.exists()) {
+            Bitmap art = BitmapFactory.decodeFile(artFile.getPath());
+            if (art != null) {
+                return art;
+            }
+        }
+        if (!settings.usingLocalGraphics && isUnmeteredNetwork(mContext)) {
+            Bitmap art = render(settings, category, width, height, artFile);
+            if (art != null) {
+                return art;
+            }
+        }
+        // Bundled art stands in for an art pack that hasn't been downloaded yet
+        File localFile = getArtFile(getLocalArtDir(), category, width, height);
+        if (localFile.exists()) {
+            Bitmap art = BitmapFactory.decodeFile(localFile.getPath());
+            if (art != null) {
+                return art;
+            }
+        }
+        return renderLocal(category, width, height, localFile);
+    }
+
+    /**
+     * Downloads and scales the current art pack for every category, and deletes the art of
+     * any other pack. Call from a background thread, on an unmetered network.
+     */
+    void warm(int width, int height) {
+        Settings settings = Settings.get(mContext);
+        File artPackDir = getArtPackDir(settings);
+        File[] packs = artPackDir.getParentFile().listFiles();
+        if (packs != null) {
+            for (File pack : packs) {
+                if (!pack.equals(artPackDir) && !pack.getName().equals(LOCAL_ART_DIR)) {
+                    deleteDir(pack);
+                }
+            }
+        }
+        for (int category = WeatherConditions.CATEGORY_NONE + 1;
+             category < WeatherConditions.CATEGORY_COUNT; category++) {
+            File artFile = getArtFile(artPackDir, category, width, height);
+            if (artFile.exists()) {
+                continue;
+            }
+            if (settings.usingLocalGraphics) {
+                renderLocal(category, width, height, artFile);
+            } else {
+                render(settings, category, width, height, artFile);
+            }
+        }
+    }
+
+    private Bitmap render(Settings settings, int category, int width, int height, File artFile) {
+        String artUrl = WeatherConditions.getArtUrlForCategory(settings.artPackFormat, category);
+        try {
+            Bitmap art = Glide.with(mContext)
+                    .load(artUrl)
+                    .asBitmap()
+                    .fitCenter()
+                    .into(width, height).get();
+            save(art, artFile);
+            return art;
+        } catch (InterruptedException | ExecutionException e) {
+            Log.e(LOG_TAG, "Error retrieving large icon from " + artUrl, e);
+            return null;
+        }
+    }
+
+    private Bitmap renderLocal(int category, int width, int height, File artFile) {
+        Bitmap original = BitmapFactory.decodeResource(mContext.getResources(),
+                WeatherConditions.getArtResourceForCategory(category));
+        if (original == null) {
+            return null;
+        }
+        // Fit inside width x height, keeping the aspect ratio
+        float scale = Math.min((float) width / original.getWidth(),
+                (float) height / original.getHeight());
+        Bitmap art = Bitmap.createScaledBitmap(original,
+                Math.max(1, Math.round(original.getWidth() * scale)),
+                Math.max(1, Math.round(original.getHeight() * scale)), true);
+        if (art != original) {
+            original.recycle();
+        }
+        save(art, artFile);
+        return art;
+    }
+
+    private static void save(Bitmap art, File artFile) {
+        File dir = artFile.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.e(LOG_TAG, "Couldn't create " + dir);
+            return;
+        }
+        // Write to a temporary file first so a reader never decodes a partial image
+        File partial = new File(dir, artFile.getName() + ".partial");
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(partial);
+            art.compress(Bitmap.CompressFormat.PNG, 100, out);
+            out.close();
+            out = null;
+            if (!partial.renameTo(artFile)) {
+                Log.e(LOG_TAG, "Couldn't write " + artFile);
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Couldn't write " + artFile, e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // Nothing left to do with it
+                }
+            }
+            partial.delete();
+        }
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -2,9 +2,6 @@ package com.example.android.sunshine.app.sync;
 
 import android.accounts.Account;
 import android.accounts.AccountManager;
-import android.annotation.SuppressLint;
-import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.content.AbstractThreadedSyncAdapter;
 import android.content.ContentProviderClient;
 import android.content.ContentResolver;
@@ -12,36 +9,22 @@ import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.content.SyncRequest;
 import android.content.SyncResult;
-import android.content.res.Resources;
 import android.database.Cursor;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.preference.PreferenceManager;
 import android.support.annotation.IntDef;
-import android.support.v4.app.NotificationCompat;
-import android.support.v4.app.TaskStackBuilder;
 import android.text.format.Time;
 import android.util.Log;
 
-import com.bumptech.glide.Glide;
 import com.example.android.sunshine.app.BuildConfig;
-import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Settings;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
-import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.ResultCallback;
-import com.google.android.gms.wearable.DataApi;
-import com.google.android.gms.wearable.PutDataMapRequest;
-import com.google.android.gms.wearable.PutDataRequest;
-import com.google.android.gms.wearable.Wearable;
+import com.example.android.sunshine.app.wearable.WearablePublisher;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -57,12 +40,9 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.UUID;
 import java.util.Vector;
-import java.util.concurrent.ExecutionException;
 
 public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
-    private GoogleApiClient googleApiClient;
-	
     public final String LOG_TAG = SunshineSyncAdapter.class.getSimpleName();
     public static final String ACTION_DATA_UPDATED =
             "com.example.android.sunshine.app.ACTION_DATA_UPDATED";
@@ -71,13 +51,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public static final int SYNC_INTERVAL = 60 * 180;
     public static final int SYNC_FLEXTIME = SYNC_INTERVAL/3;
     private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
-    private static final int WEATHER_NOTIFICATION_ID = 3004;
-
-    private static final String WEATHER_INFO_PATH = "/weather/info";
-    private static final String KEY_TIMESTAMP = "timestamp";
-    private static final String KEY_WEATHER_ID = "weatherId";
-    private static final String KEY_HIGH = "high";
-    private static final String KEY_LOW = "low";
 
     private static final String[] NOTIFY_WEATHER_PROJECTION = new String[] {
             WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
@@ -104,10 +77,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
     public SunshineSyncAdapter(Context context, boolean autoInitialize) {
         super(context, autoInitialize);
-		if (googleApiClient == null) {
-            googleApiClient = new GoogleApiClient.Builder(context)
-			.addApi(Wearable.API)
-            .build();		}
     }
 
     @Override
@@ -371,29 +340,29 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
 
                 cVVector.add(weatherValues);
+            }
 
-                if (i == 0) {
-                    updateWearable(weatherId, high, low);
-                }
-
-                // add to database
-                if (cVVector.size() > 0) {
-                    ContentValues[] cvArray = new ContentValues[cVVector.size()];
-                    cVVector.toArray(cvArray);
-                    getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
-
-                    // delete old data so we don't build up an endless history
-                    getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
-                            WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
-                            new String[]{Long.toString(dayTime.setJulianDay(julianStartDay - 1))});
-
-                    updateWidgets();
-                    updateMuzei();
-                    notifyWeather();
-                }
-                Log.d(LOG_TAG, "Sync Complete. " + cVVector.size() + " Inserted");
-                setLocationStatus(getContext(), LOCATION_STATUS_OK);
+            // add to database
+            if (cVVector.size() > 0) {
+                ContentValues[] cvArray = new ContentValues[cVVector.size()];
+                cVVector.toArray(cvArray);
+                boolean todayChanged = isTodayChanged(locationSetting, cvArray[0]);
+                getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
+
+                // delete old data so we don't build up an endless history
+                getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
+                        WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
+                        new String[]{Long.toString(dayTime.setJulianDay(julianStartDay - 1))});
+
+                DataUpdateBus.getInstance(context).postDataChanged(locationSetting,
+                        cvArray[0].getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE),
+                        cvArray[cvArray.length - 1].getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE),
+                        todayChanged);
+                notifyWeather(cvArray[0]);
+                WearablePublisher.getInstance(context).publishForecast();
             }
+            Log.d(LOG_TAG, "Sync Complete. " + cVVector.size() + " Inserted");
+            setLocationStatus(getContext(), LOCATION_STATUS_OK);
         } catch (JSONException e) {
             Log.e(LOG_TAG, e.getMessage(), e);
             e.printStackTrace();
@@ -401,127 +370,55 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         }
     }
 
-    private void updateWidgets() {
-        Context context = getContext();
-        // Setting the package ensures that only components in our app will receive the broadcast
-        Intent dataUpdatedIntent = new Intent(ACTION_DATA_UPDATED)
-                .setPackage(context.getPackageName());
-        context.sendBroadcast(dataUpdatedIntent);
-    }
-
-    private void updateMuzei() {
-        // Muzei is only compatible with Jelly Bean MR1+ devices, so there's no need to update the
-        // Muzei background on lower API level devices
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-            Context context = getContext();
-            context.startService(new Intent(ACTION_DATA_UPDATED)
-                    .setClass(context, WeatherMuzeiSource.class));
+    /**
+     * @param today the row about to be written for today
+     * @return whether today's icon, description or temperatures differ from what's stored
+     */
+    private boolean isTodayChanged(String locationSetting, ContentValues today) {
+        Uri todayUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(locationSetting,
+                today.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE));
+        Cursor cursor = getContext().getContentResolver().query(todayUri,
+                NOTIFY_WEATHER_PROJECTION, null, null, null);
+        if (cursor == null) {
+            return true;
+        }
+        try {
+            return !cursor.moveToFirst()
+                    || cursor.getInt(INDEX_WEATHER_ID)
+                            != today.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID)
+                    || cursor.getDouble(INDEX_MAX_TEMP)
+                            != today.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP)
+                    || cursor.getDouble(INDEX_MIN_TEMP)
+                            != today.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP)
+                    || !cursor.getString(INDEX_SHORT_DESC).equals(
+                            today.getAsString(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC));
+        } finally {
+            cursor.close();
         }
     }
 
-    private void notifyWeather() {
+    /**
+     * Hands today's values to {@link WeatherNotificationService} if it's time for the daily
+     * notification. The notification, and its art, are built there rather than on this thread.
+     *
+     * @param today the row just written for today
+     */
+    private void notifyWeather(ContentValues today) {
         Context context = getContext();
         //checking the last update and notify if it' the first of the day
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        String displayNotificationsKey = context.getString(R.string.pref_enable_notifications_key);
-        boolean displayNotifications = prefs.getBoolean(displayNotificationsKey,
-                Boolean.parseBoolean(context.getString(R.string.pref_enable_notifications_default)));
+        Settings settings = Settings.get(context);
 
-        if ( displayNotifications ) {
+        if ( settings.notificationsEnabled ) {
 
-            String lastNotificationKey = context.getString(R.string.pref_last_notification);
-            long lastSync = prefs.getLong(lastNotificationKey, 0);
+            long lastSync = settings.lastNotification;
 
             if (System.currentTimeMillis() - lastSync >= DAY_IN_MILLIS) {
                 // Last sync was more than 1 day ago, let's send a notification with the weather.
-                String locationQuery = Utility.getPreferredLocation(context);
-
-                Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(locationQuery, System.currentTimeMillis());
-
-                // we'll query our contentProvider, as always
-                Cursor cursor = context.getContentResolver().query(weatherUri, NOTIFY_WEATHER_PROJECTION, null, null, null);
-
-                if (cursor.moveToFirst()) {
-                    int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-                    double high = cursor.getDouble(INDEX_MAX_TEMP);
-                    double low = cursor.getDouble(INDEX_MIN_TEMP);
-                    String desc = cursor.getString(INDEX_SHORT_DESC);
-
-                    int iconId = Utility.getIconResourceForWeatherCondition(weatherId);
-                    Resources resources = context.getResources();
-                    int artResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
-                    String artUrl = Utility.getArtUrlForWeatherCondition(context, weatherId);
-
-                    // On Honeycomb and higher devices, we can retrieve the size of the large icon
-                    // Prior to that, we use a fixed size
-                    @SuppressLint("InlinedApi")
-                    int largeIconWidth = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
-                            ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width)
-                            : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
-                    @SuppressLint("InlinedApi")
-                    int largeIconHeight = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
-                            ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height)
-                            : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
-
-                    // Retrieve the large icon
-                    Bitmap largeIcon;
-                    try {
-                        largeIcon = Glide.with(context)
-                                .load(artUrl)
-                                .asBitmap()
-                                .error(artResourceId)
-                                .fitCenter()
-                                .into(largeIconWidth, largeIconHeight).get();
-                    } catch (InterruptedException | ExecutionException e) {
-                        Log.e(LOG_TAG, "Error retrieving large icon from " + artUrl, e);
-                        largeIcon = BitmapFactory.decodeResource(resources, artResourceId);
-                    }
-                    String title = context.getString(R.string.app_name);
-
-                    // Define the text of the forecast.
-                    String contentText = String.format(context.getString(R.string.format_notification),
-                            desc,
-                            Utility.formatTemperature(context, high),
-                            Utility.formatTemperature(context, low));
-
-                    // NotificationCompatBuilder is a very convenient way to build backward-compatible
-                    // notifications.  Just throw in some data.
-                    NotificationCompat.Builder mBuilder =
-                            new NotificationCompat.Builder(getContext())
-                                    .setColor(resources.getColor(R.color.primary_light))
-                                    .setSmallIcon(iconId)
-                                    .setLargeIcon(largeIcon)
-                                    .setContentTitle(title)
-                                    .setContentText(contentText);
-
-                    // Make something interesting happen when the user clicks on the notification.
-                    // In this case, opening the app is sufficient.
-                    Intent resultIntent = new Intent(context, MainActivity.class);
-
-                    // The stack builder object will contain an artificial back stack for the
-                    // started Activity.
-                    // This ensures that navigating backward from the Activity leads out of
-                    // your application to the Home screen.
-                    TaskStackBuilder stackBuilder = TaskStackBuilder.create(context);
-                    stackBuilder.addNextIntent(resultIntent);
-                    PendingIntent resultPendingIntent =
-                            stackBuilder.getPendingIntent(
-                                    0,
-                                    PendingIntent.FLAG_UPDATE_CURRENT
-                            );
-                    mBuilder.setContentIntent(resultPendingIntent);
-
-                    NotificationManager mNotificationManager =
-                            (NotificationManager) getContext().getSystemService(Context.NOTIFICATION_SERVICE);
-                    // WEATHER_NOTIFICATION_ID allows you to update the notification later on.
-                    mNotificationManager.notify(WEATHER_NOTIFICATION_ID, mBuilder.build());
-
-                    //refreshing last sync
-                    SharedPreferences.Editor editor = prefs.edit();
-                    editor.putLong(lastNotificationKey, System.currentTimeMillis());
-                    editor.commit();
-                }
-                cursor.close();
+                WeatherNotificationService.startNotify(context,
+                        today.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID),
+                        today.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP),
+                        today.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP),
+                        today.getAsString(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC));
             }
         }
     }
@@ -668,50 +565,13 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     }
 
     /**
-     * Sets the location status into shared preference.  This function should not be called from
-     * the UI thread because it uses commit to write to the shared preferences.
-     * @param c Context to get the PreferenceManager from.
+     * Sets the location status into shared preference.  The new status is visible through
+     * {@link Settings} immediately; the disk write happens asynchronously, and not at all if the
+     * status hasn't changed.
+     * @param c Context to get the Settings from.
      * @param locationStatus The IntDef value to set
      */
     static private void setLocationStatus(Context c, @LocationStatus int locationStatus){
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-        SharedPreferences.Editor spe = sp.edit();
-        spe.putInt(c.getString(R.string.pref_location_status_key), locationStatus);
-        spe.commit();
-    }
-	
-    public void updateWearable(int conditionCode, double high, double low) {
-
-        Log.d(LOG_TAG, "Sending weather data to wearable...");
-
-        if (googleApiClient == null) {
-            return;
-        }
-
-        googleApiClient.connect();
-
-        PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(WEATHER_INFO_PATH);
-
-        putDataMapRequest.getDataMap().putLong(KEY_TIMESTAMP, System.currentTimeMillis());
-		putDataMapRequest.getDataMap().putInt(KEY_WEATHER_ID, conditionCode);
-        putDataMapRequest.getDataMap().putString(KEY_HIGH, Utility.formatTemperature(getContext(), high));
-        putDataMapRequest.getDataMap().putString(KEY_LOW, Utility.formatTemperature(getContext(), low));
-        putDataMapRequest.getDataMap().putLong("Time",System.currentTimeMillis());
-
-        PutDataRequest request = putDataMapRequest.asPutDataRequest();
-
-        Log.d(LOG_TAG, "High:" + high + ", Low:" + low + ", Condition code: " + conditionCode);
-
-        Wearable.DataApi.putDataItem(googleApiClient, request)
-                .setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
-                    @Override
-                    public void onResult(DataApi.DataItemResult dataItemResult) {
-                        if (!dataItemResult.getStatus().isSuccess()) {
-                            Log.d(LOG_TAG, "Failed to send weather data to wearable :-)");
-                        } else {
-                            Log.d(LOG_TAG, "Successfully sent weather data to wearable :-(");
-                        }
-                    }
-                });
+        Settings.edit(c).putLocationStatus(locationStatus).apply();
     }
-}
\ No newline at end of file
+}
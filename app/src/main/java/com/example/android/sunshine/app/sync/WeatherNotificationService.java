@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.annotation.SuppressLint;
+import android.app.IntentService;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.TaskStackBuilder;
+
+import com.example.android.sunshine.app.MainActivity;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Settings;
+import com.example.android.sunshine.app.Utility;
+
+/**
+ * Builds the daily weather notification away from the sync thread.
+ *
+ * The sync adapter hands over today's values as extras right after writing them, so nothing is
+ * queried again here. The large icon comes from {@link NotificationArtCache}, which this service
+ * also warms when the art pack changes.
+ */
+public class WeatherNotificationService extends IntentService {
+    public static final String ACTION_NOTIFY =
+            "com.example.android.sunshine.app.sync.action.NOTIFY";
+    public static final String ACTION_WARM_ART =
+            "com.example.android.sunshine.app.sync.action.WARM_ART";
+
+    static final String EXTRA_WEATHER_ID = "weather_id";
+    static final String EXTRA_HIGH = "high";
+    static final String EXTRA_LOW = "low";
+    static final String EXTRA_DESCRIPTION = "description";
+
+    private static final int WEATHER_NOTIFICATION_ID = 3004;
+
+    public WeatherNotificationService() {
+        super("WeatherNotificationService");
+    }
+
+    /**
+     * Shows today's weather.
+     */
+    static void startNotify(Context context, int weatherId, double high, double low,
+                            String description) {
+        context.startService(new Intent(ACTION_NOTIFY)
+                .setClass(context, WeatherNotificationService.class)
+                .putExtra(EXTRA_WEATHER_ID, weatherId)
+                .putExtra(EXTRA_HIGH, high)
+                .putExtra(EXTRA_LOW, low)
+                .putExtra(EXTRA_DESCRIPTION, description));
+    }
+
+    /**
+     * Prepares the notification art for the current art pack, if the network is unmetered.
+     */
+    public static void startWarmArt(Context context) {
+        context.startService(new Intent(ACTION_WARM_ART)
+                .setClass(context, WeatherNotificationService.class));
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        if (intent == null) {
+            return;
+        }
+        if (ACTION_WARM_ART.equals(intent.getAction())) {
+            if (NotificationArtCache.isUnmeteredNetwork(this)) {
+                Resources resources = getResources();
+                new NotificationArtCache(this).warm(getLargeIconWidth(resources),
+                        getLargeIconHeight(resources));
+            }
+        } else if (ACTION_NOTIFY.equals(intent.getAction())) {
+            notifyWeather(intent.getIntExtra(EXTRA_WEATHER_ID, -1),
+                    intent.getDoubleExtra(EXTRA_HIGH, 0),
+                    intent.getDoubleExtra(EXTRA_LOW, 0),
+                    intent.getStringExtra(EXTRA_DESCRIPTION));
+        }
+    }
+
+    // On Honeycomb and higher devices, we can retrieve the size of the large icon
+    // Prior to that, we use a fixed size
+    @SuppressLint("InlinedApi")
+    private static int getLargeIconWidth(Resources resources) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width)
+                : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
+    }
+
+    @SuppressLint("InlinedApi")
+    private static int getLargeIconHeight(Resources resources) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height)
+                : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
+    }
+
+    private void notifyWeather(int weatherId, double high, double low, String desc) {
+        int iconId = Utility.getIconResourceForWeatherCondition(weatherId);
+        Resources resources = getResources();
+
+        // Retrieve the large icon
+        Bitmap largeIcon = new NotificationArtCache(this).get(weatherId,
+                getLargeIconWidth(resources), getLargeIconHeight(resources));
+        String title = getString(R.string.app_name);
+
+        // Define the text of the forecast.
+        String contentText = String.format(getString(R.string.format_notification),
+                desc,
+                Utility.formatTemperature(this, high),
+                Utility.formatTemperature(this, low));
+
+        // NotificationCompatBuilder is a very convenient way to build backward-compatible
+        // notifications.  Just throw in some data.
+        NotificationCompat.Builder mBuilder =
+                new NotificationCompat.Builder(this)
+                        .setColor(resources.getColor(R.color.primary_light))
+                        .setSmallIcon(iconId)
+                        .setLargeIcon(largeIcon)
+                        .setContentTitle(title)
+                        .setContentText(contentText);
+
+        // Make something interesting happen when the user clicks on the notification.
+        // In this case, opening the app is sufficient.
+        Intent resultIntent = new Intent(this, MainActivity.class);
+
+        // The stack builder object will contain an artificial back stack for the
+        // started Activity.
+        // This ensures that navigating backward from the Activity leads out of
+        // your application to the Home screen.
+        TaskStackBuilder stackBuilder = TaskStackBuilder.create(this);
+        stackBuilder.addNextIntent(resultIntent);
+        PendingIntent resultPendingIntent =
+                stackBuilder.getPendingIntent(
+                        0,
+                        PendingIntent.FLAG_UPDATE_CURRENT
+                );
+        mBuilder.setContentIntent(resultPendingIntent);
+
+        NotificationManager mNotificationManager =
+                (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        // WEATHER_NOTIFICATION_ID allows you to update the notification later on.
+        mNotificationManager.notify(WEATHER_NOTIFICATION_ID, mBuilder.build());
+
+        //refreshing last sync
+        Settings.edit(this).putLastNotification(System.currentTimeMillis()).apply();
+    }
+}
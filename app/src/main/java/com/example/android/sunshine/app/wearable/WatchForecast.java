@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.wearable;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.text.format.Time;
+
+import com.example.android.sunshine.app.Settings;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+import com.example.android.sunshine.shared.WatchProtocol;
+import com.example.android.sunshine.shared.WeatherForecast;
+import com.google.android.gms.wearable.Asset;
+import com.google.android.gms.wearable.DataMap;
+import com.google.android.gms.wearable.PutDataMapRequest;
+import com.google.android.gms.wearable.PutDataRequest;
+
+import java.util.Arrays;
+
+/**
+ * The stored forecast for the preferred location, as the watch is sent it.
+ *
+ * Every day from today on goes into one {@link WeatherForecast} asset on the
+ * {@link #WEATHER_INFO_PATH} data item, so the watch can show today, and tomorrow after midnight,
+ * from its own copy.
+ *
+ * The item holds nothing but the forecast and the location it's for, and a forecast with the
+ * same content as the last one published isn't sent at all, so the item only changes, and the
+ * watch only wakes up to sync it, when what the watch shows changes. Skipped publishes are counted
+ * in {@link WearableMetrics}.
+ *
+ * The watch can also ask for the forecast with a {@link WatchProtocol} request, which is answered
+ * from the database; the network is only used when there's no forecast for today to answer with.
+ * A version names one content only: content that hasn't been published gets the next version,
+ * and is published before the reply carries it.
+ *
+ * {@link WearablePublisher} does the sending.
+ */
+public class WatchForecast {
+
+    public static final String WEATHER_INFO_PATH = "/weather/info";
+    private static final String KEY_FORECAST = "forecast";
+    // Where the forecast is for, so the watch can fetch it itself when the phone is away
+    private static final String KEY_LOCATION = "location";
+    private static final String KEY_LATITUDE = "latitude";
+    private static final String KEY_LONGITUDE = "longitude";
+
+    private static final String[] FORECAST_COLUMNS = {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
+    };
+
+    // these indices must match the projection
+    private static final int COL_DATE = 0;
+    private static final int COL_WEATHER_ID = 1;
+    private static final int COL_MAX_TEMP = 2;
+    private static final int COL_MIN_TEMP = 3;
+
+    /**
+     * Reads the forecast to publish from the database.
+     *
+     * @return the forecast, or null if there's no forecast for today or the watch already has
+     *         this one
+     */
+    static WeatherForecast readChangedForecast(Context context) {
+        WeatherForecast forecast = readCurrentForecast(context);
+        if (forecast == null) {
+            return null;
+        }
+        if (isPublished(context, forecast)) {
+            WearableMetrics.getInstance().onSuppressed();
+            return null;
+        }
+        return forecast;
+    }
+
+    /**
+     * Reads the stored forecast under the version it was published as, or under the next unused
+     * version if its content hasn't been published.
+     *
+     * @return the forecast, or null if there's no forecast for today
+     */
+    static WeatherForecast readCurrentForecast(Context context) {
+        Settings settings = Settings.get(context);
+        WeatherForecast forecast = readForecast(context, settings.location,
+                settings.wearableForecastVersion + 1, settings.isMetric);
+        if (forecast != null && settings.wearableForecastVersion != 0
+                && forecast.contentHashCode() == settings.wearableForecastHash) {
+            return forecast.withVersion(settings.wearableForecastVersion);
+        }
+        return forecast;
+    }
+
+    /**
+     * @return whether the forecast is the one last published, under the same version
+     */
+    static boolean isPublished(Context context, WeatherForecast forecast) {
+        Settings settings = Settings.get(context);
+        return settings.wearableForecastVersion != 0
+                && forecast.version == settings.wearableForecastVersion;
+    }
+
+    static PutDataRequest createPutDataRequest(Context context, WeatherForecast forecast) {
+        Settings settings = Settings.get(context);
+        PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(WEATHER_INFO_PATH);
+        DataMap dataMap = putDataMapRequest.getDataMap();
+        dataMap.putAsset(KEY_FORECAST, Asset.createFromBytes(forecast.toByteArray()));
+        dataMap.putString(KEY_LOCATION, settings.location);
+        if (settings.isLocationLatLonAvailable) {
+            dataMap.putFloat(KEY_LATITUDE, settings.locationLatitude);
+            dataMap.putFloat(KEY_LONGITUDE, settings.locationLongitude);
+        }
+        return putDataMapRequest.asPutDataRequest();
+    }
+
+    /**
+     * Answers a watch's request with the forecast, or with nothing if the watch already has it.
+     *
+     * @param forecast from {@link #readCurrentForecast}, already published, or null if there's no
+     *                 forecast for today
+     */
+    static byte[] createResponse(Context context, byte[] request, WeatherForecast forecast) {
+        if (forecast == null) {
+            // The sync publishes whatever it fetches, so the watch gets it without asking again
+            SunshineSyncAdapter.syncImmediately(context);
+            WearableMetrics.getInstance().onRequestSynced();
+            return WatchProtocol.createResponse(WatchProtocol.STATUS_UNAVAILABLE, null);
+        }
+        WearableMetrics.getInstance().onRequestAnswered();
+        if (WatchProtocol.isCurrent(request, forecast)) {
+            return WatchProtocol.createResponse(WatchProtocol.STATUS_CURRENT, null);
+        }
+        return WatchProtocol.createResponse(WatchProtocol.STATUS_FORECAST, forecast);
+    }
+
+    /**
+     * Records that the data layer accepted the forecast, so the same one isn't sent again.
+     */
+    static void onPublished(Context context, WeatherForecast forecast) {
+        Settings.edit(context)
+                .putWearableForecast(forecast.version, forecast.contentHashCode())
+                .apply();
+        WearableMetrics.getInstance().onPublished();
+    }
+
+    /**
+     * @return the consecutive days stored for the location starting today, or null if today
+     *         isn't stored
+     */
+    static WeatherForecast readForecast(Context context, String locationSetting, long version,
+                                        boolean isMetric) {
+        long now = System.currentTimeMillis();
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(locationSetting, now),
+                FORECAST_COLUMNS, null, null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            Time time = new Time();
+            int todayJulianDay = getJulianDay(time, now);
+            int days = 0;
+            int[] weatherIds = new int[cursor.getCount()];
+            double[] highs = new double[weatherIds.length];
+            double[] lows = new double[weatherIds.length];
+            // The watch finds a day by its offset from today, so stop at the first gap
+            while (cursor.moveToNext()
+                    && getJulianDay(time, cursor.getLong(COL_DATE)) == todayJulianDay + days) {
+                weatherIds[days] = cursor.getInt(COL_WEATHER_ID);
+                highs[days] = cursor.getDouble(COL_MAX_TEMP);
+                lows[days] = cursor.getDouble(COL_MIN_TEMP);
+                days++;
+            }
+            if (days == 0) {
+                return null;
+            }
+            if (days < weatherIds.length) {
+                weatherIds = Arrays.copyOf(weatherIds, days);
+                highs = Arrays.copyOf(highs, days);
+                lows = Arrays.copyOf(lows, days);
+            }
+            return new WeatherForecast(version, todayJulianDay, isMetric, weatherIds, highs, lows);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static int getJulianDay(Time time, long millis) {
+        time.set(millis);
+        return Time.getJulianDay(millis, time.gmtoff);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.wearable;
+
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts what the phone sends to the watch, what it decides not to send, and how the watch's
+ * requests were answered since the process started, along with how long sends take from the
+ * first request to the data layer accepting them. Every change is logged with the running totals,
+ * so they can be followed with {@code adb logcat -s WearableMetrics}.
+ */
+public class WearableMetrics {
+    private static final String LOG_TAG = WearableMetrics.class.getSimpleName();
+
+    private static final WearableMetrics sInstance = new WearableMetrics();
+
+    private final AtomicLong mPublished = new AtomicLong();
+    private final AtomicLong mSuppressed = new AtomicLong();
+    private final AtomicLong mMerged = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+    private final AtomicLong mDelivered = new AtomicLong();
+    private final AtomicLong mRequestsAnswered = new AtomicLong();
+    private final AtomicLong mRequestsSynced = new AtomicLong();
+    private final AtomicLong mTotalLatencyMillis = new AtomicLong();
+    private final AtomicLong mMaxLatencyMillis = new AtomicLong();
+
+    public static WearableMetrics getInstance() {
+        return sInstance;
+    }
+
+    private WearableMetrics() {
+    }
+
+    /**
+     * A forecast that differs from the last one was queued for the watch.
+     */
+    void onPublished() {
+        mPublished.incrementAndGet();
+        log();
+    }
+
+    /**
+     * A forecast was dropped because the watch already has the same one.
+     */
+    void onSuppressed() {
+        mSuppressed.incrementAndGet();
+        log();
+    }
+
+    /**
+     * A publish was requested while another was still pending, and was folded into it.
+     */
+    void onMerged() {
+        mMerged.incrementAndGet();
+        log();
+    }
+
+    /**
+     * Pending publishes were given up on after repeated failures.
+     */
+    void onDropped() {
+        mDropped.incrementAndGet();
+        log();
+    }
+
+    /**
+     * Pending publishes were flushed.
+     *
+     * @param latencyMillis time since the oldest of them was requested
+     */
+    void onDelivered(long latencyMillis) {
+        mDelivered.incrementAndGet();
+        mTotalLatencyMillis.addAndGet(latencyMillis);
+        long max;
+        do {
+            max = mMaxLatencyMillis.get();
+        } while (latencyMillis > max && !mMaxLatencyMillis.compareAndSet(max, latencyMillis));
+        log();
+    }
+
+    /**
+     * A watch request was answered from the database.
+     */
+    void onRequestAnswered() {
+        mRequestsAnswered.incrementAndGet();
+        log();
+    }
+
+    /**
+     * A watch request found nothing in the database and started a sync.
+     */
+    void onRequestSynced() {
+        mRequestsSynced.incrementAndGet();
+        log();
+    }
+
+    public long getPublishedCount() {
+        return mPublished.get();
+    }
+
+    public long getSuppressedCount() {
+        return mSuppressed.get();
+    }
+
+    public long getMergedCount() {
+        return mMerged.get();
+    }
+
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    public long getDeliveredCount() {
+        return mDelivered.get();
+    }
+
+    public long getRequestsAnsweredCount() {
+        return mRequestsAnswered.get();
+    }
+
+    public long getRequestsSyncedCount() {
+        return mRequestsSynced.get();
+    }
+
+    /**
+     * @return the mean delivery latency in milliseconds, or 0 if nothing was delivered
+     */
+    public long getMeanLatencyMillis() {
+        long delivered = mDelivered.get();
+        return delivered == 0 ? 0 : mTotalLatencyMillis.get() / delivered;
+    }
+
+    public long getMaxLatencyMillis() {
+        return mMaxLatencyMillis.get();
+    }
+
+    private void log() {
+        if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
+            Log.d(LOG_TAG, "published=" + mPublished.get() + " suppressed=" + mSuppressed.get()
+                    + " merged=" + mMerged.get() + " dropped=" + mDropped.get()
+                    + " delivered=" + mDelivered.get()
+                    + " requests answered=" + mRequestsAnswered.get()
+                    + " synced=" + mRequestsSynced.get()
+                    + " latency mean=" + getMeanLatencyMillis() + "ms max="
+                    + mMaxLatencyMillis.get() + "ms");
+        }
+    }
+}
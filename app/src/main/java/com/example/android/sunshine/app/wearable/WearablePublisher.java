@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.wearable;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.android.sunshine.shared.WatchProtocol;
+import com.example.android.sunshine.shared.WeatherForecast;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.MessageApi;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the phone's data to the watch over one long-lived connection.
+ *
+ * Callers only say that something changed. Requests made while a send is pending, including
+ * while the connection is down, are merged into it, and the data is read from the database when
+ * it's actually sent, so a burst of changes leaves the process as one put with the newest data.
+ * Sending happens on a worker thread that connects with a timeout and waits for each put, so a
+ * put can't race the connection. A failed send is retried with backoff and dropped after
+ * {@link #MAX_ATTEMPTS}; latency, merges and drops go to {@link WearableMetrics}.
+ *
+ * Answers to the watch's requests go out on the same thread and connection. A forecast that hasn't
+ * been published is published before an answer carries it, so the watch never holds a version the
+ * data layer doesn't. Answers aren't retried; the watch asks again if it still needs to.
+ */
+public class WearablePublisher {
+    private static final String LOG_TAG = WearablePublisher.class.getSimpleName();
+
+    private static final long CONNECT_TIMEOUT_SECONDS = 10;
+    private static final long PUT_TIMEOUT_SECONDS = 10;
+    private static final long MESSAGE_TIMEOUT_SECONDS = 10;
+    private static final long FIRST_RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final int MAX_ATTEMPTS = 5;
+
+    private static WearablePublisher sInstance;
+
+    private final Context mContext;
+    private final GoogleApiClient mGoogleApiClient;
+    private final Handler mHandler;
+
+    // Guarded by this. mRequested counts requests; a send covers those made before it started.
+    private long mRequested;
+    private long mPendingSince;
+    // Only touched on the worker thread. mAttempts counts failed sends of the batch that ends
+    // with request mAttemptsRequested; a newer batch starts again from zero.
+    private int mAttempts;
+    private long mAttemptsRequested;
+
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    public static synchronized WearablePublisher getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WearablePublisher(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WearablePublisher(Context context) {
+        mContext = context;
+        mGoogleApiClient = new GoogleApiClient.Builder(context)
+                .addApi(Wearable.API)
+                .build();
+        HandlerThread thread = new HandlerThread(LOG_TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Sends the stored forecast to the watch, if it changed. Returns immediately.
+     */
+    public void publishForecast() {
+        synchronized (this) {
+            if (mPendingSince != 0) {
+                WearableMetrics.getInstance().onMerged();
+            } else {
+                mPendingSince = SystemClock.elapsedRealtime();
+            }
+            mRequested++;
+        }
+        // A new request doesn't wait out the backoff of an old one
+        mHandler.removeCallbacks(mFlush);
+        mHandler.post(mFlush);
+    }
+
+    /**
+     * Answers a {@link WatchProtocol} request from the watch. Returns immediately.
+     *
+     * @param nodeId the watch that asked
+     */
+    public void answerRequest(final String nodeId, final byte[] request) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!connect()) {
+                    return;
+                }
+                WeatherForecast forecast = WatchForecast.readCurrentForecast(mContext);
+                if (forecast != null && !WatchForecast.isPublished(mContext, forecast)
+                        && !put(forecast)) {
+                    return;
+                }
+                MessageApi.SendMessageResult result = Wearable.MessageApi.sendMessage(
+                        mGoogleApiClient, nodeId, WatchProtocol.RESPONSE_PATH,
+                        WatchForecast.createResponse(mContext, request, forecast))
+                        .await(MESSAGE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                if (!result.getStatus().isSuccess()) {
+                    Log.w(LOG_TAG, "Failed to answer the watch: " + result.getStatus());
+                }
+            }
+        });
+    }
+
+    private void flush() {
+        long requested;
+        long pendingSince;
+        synchronized (this) {
+            if (mPendingSince == 0) {
+                return;
+            }
+            requested = mRequested;
+            pendingSince = mPendingSince;
+        }
+        if (requested != mAttemptsRequested) {
+            // New requests were merged in, and they get every attempt
+            mAttemptsRequested = requested;
+            mAttempts = 0;
+        }
+
+        if (!send()) {
+            if (++mAttempts < MAX_ATTEMPTS) {
+                long delay = FIRST_RETRY_DELAY_MILLIS << (mAttempts - 1);
+                Log.w(LOG_TAG, "Send failed, retrying in " + delay + "ms");
+                mHandler.postDelayed(mFlush, delay);
+                return;
+            }
+            Log.w(LOG_TAG, "Send failed " + mAttempts + " times, dropping it");
+            WearableMetrics.getInstance().onDropped();
+        } else {
+            WearableMetrics.getInstance().onDelivered(
+                    SystemClock.elapsedRealtime() - pendingSince);
+        }
+        mAttempts = 0;
+
+        synchronized (this) {
+            if (mRequested == requested) {
+                mPendingSince = 0;
+                return;
+            }
+            // More changes came in while this send was reading the database; send again. Their
+            // latency is counted from here, which is at most one send short.
+            mPendingSince = SystemClock.elapsedRealtime();
+        }
+        mHandler.post(mFlush);
+    }
+
+    /**
+     * @return whether the watch has, or is queued to get, the current data
+     */
+    private boolean send() {
+        if (!connect()) {
+            return false;
+        }
+
+        WeatherForecast forecast = WatchForecast.readChangedForecast(mContext);
+        if (forecast == null) {
+            // Nothing new to send
+            return true;
+        }
+        return put(forecast);
+    }
+
+    /**
+     * Puts the forecast on the data item and records it as published. Worker thread only.
+     *
+     * @return whether the data layer accepted it
+     */
+    private boolean put(WeatherForecast forecast) {
+        DataApi.DataItemResult result = Wearable.DataApi.putDataItem(mGoogleApiClient,
+                WatchForecast.createPutDataRequest(mContext, forecast))
+                .await(PUT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!result.getStatus().isSuccess()) {
+            Log.w(LOG_TAG, "Failed to put the forecast: " + result.getStatus());
+            return false;
+        }
+        WatchForecast.onPublished(mContext, forecast);
+        return true;
+    }
+
+    /**
+     * @return whether the client is connected, after waiting for it if it wasn't
+     */
+    private boolean connect() {
+        if (mGoogleApiClient.isConnected()) {
+            return true;
+        }
+        ConnectionResult result =
+                mGoogleApiClient.blockingConnect(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!result.isSuccess()) {
+            Log.w(LOG_TAG, "Couldn't connect to the wearable API: " + result);
+            return false;
+        }
+        return true;
+    }
+}
@@ -7,18 +7,15 @@ import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Binder;
 import android.os.Build;
-import android.util.Log;
 import android.widget.AdapterView;
 import android.widget.RemoteViews;
 import android.widget.RemoteViewsService;
 
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.request.target.Target;
 import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Settings;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
-
-import java.util.concurrent.ExecutionException;
+import com.example.android.sunshine.shared.WeatherConditions;
 
 /**
  * RemoteViewsService controlling the data being shown in the scrollable weather detail widget
@@ -46,10 +43,13 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
     public RemoteViewsFactory onGetViewFactory(Intent intent) {
         return new RemoteViewsFactory() {
             private Cursor data = null;
+            // The art pack the rows are drawn from, or null when using local graphics
+            private String artPackFormat = null;
+            private int iconSize;
 
             @Override
             public void onCreate() {
-                // Nothing to do
+                iconSize = getResources().getDimensionPixelSize(R.dimen.list_icon);
             }
 
             @Override
@@ -71,6 +71,24 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                         null,
                         WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
                 Binder.restoreCallingIdentity(identityToken);
+                renderIcons();
+            }
+
+            // Runs on a binder thread, where blocking is fine, so that getViewAt never has to
+            // fetch an icon.
+            private void renderIcons() {
+                Settings settings = Settings.get(DetailWidgetRemoteViewsService.this);
+                artPackFormat = settings.usingLocalGraphics ? null : settings.artPackFormat;
+                if (artPackFormat == null || data == null) {
+                    return;
+                }
+                boolean[] categories = new boolean[WeatherConditions.CATEGORY_COUNT];
+                for (int position = 0; data.moveToPosition(position); position++) {
+                    categories[WeatherConditions.getCategory(
+                            data.getInt(INDEX_WEATHER_CONDITION_ID))] = true;
+                }
+                WidgetIconCache.getInstance(DetailWidgetRemoteViewsService.this)
+                        .render(artPackFormat, categories, iconSize);
             }
 
             @Override
@@ -97,18 +115,9 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                 int weatherId = data.getInt(INDEX_WEATHER_CONDITION_ID);
                 int weatherArtResourceId = Utility.getIconResourceForWeatherCondition(weatherId);
                 Bitmap weatherArtImage = null;
-                if ( !Utility.usingLocalGraphics(DetailWidgetRemoteViewsService.this) ) {
-                    String weatherArtResourceUrl = Utility.getArtUrlForWeatherCondition(
-                            DetailWidgetRemoteViewsService.this, weatherId);
-                    try {
-                        weatherArtImage = Glide.with(DetailWidgetRemoteViewsService.this)
-                                .load(weatherArtResourceUrl)
-                                .asBitmap()
-                                .error(weatherArtResourceId)
-                                .into(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL).get();
-                    } catch (InterruptedException | ExecutionException e) {
-                        Log.e(LOG_TAG, "Error retrieving large icon from " + weatherArtResourceUrl, e);
-                    }
+                if (artPackFormat != null) {
+                    weatherArtImage = WidgetIconCache.getInstance(DetailWidgetRemoteViewsService.this)
+                            .get(artPackFormat, WeatherConditions.getCategory(weatherId), iconSize);
                 }
                 String description = data.getString(INDEX_WEATHER_DESC);
                 long dateInMillis = data.getLong(INDEX_WEATHER_DATE);
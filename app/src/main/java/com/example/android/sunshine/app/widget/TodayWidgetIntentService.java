@@ -34,6 +34,8 @@ import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
 
+import java.util.Arrays;
+
 /**
  * IntentService which handles updating all Today widgets with the latest data
  */
@@ -50,6 +52,18 @@ public class TodayWidgetIntentService extends IntentService {
     private static final int INDEX_MAX_TEMP = 2;
     private static final int INDEX_MIN_TEMP = 3;
 
+    // Widgets are drawn with one of these layouts depending on their width
+    private static final int BUCKET_SMALL = 0;
+    private static final int BUCKET_DEFAULT = 1;
+    private static final int BUCKET_LARGE = 2;
+    private static final int[] BUCKET_LAYOUTS = {
+            R.layout.widget_today_small, R.layout.widget_today, R.layout.widget_today_large
+    };
+
+    // What each bucket was last updated with, for as long as the process lives. A null entry
+    // means the bucket hasn't been drawn by this process yet. Only touched from the worker thread.
+    private static final Integer[] sLastContentHashes = new Integer[BUCKET_LAYOUTS.length];
+
     public TodayWidgetIntentService() {
         super("TodayWidgetIntentService");
     }
@@ -85,21 +99,50 @@ public class TodayWidgetIntentService extends IntentService {
         String formattedMinTemperature = Utility.formatTemperature(this, minTemp);
         data.close();
 
-        // Perform this loop procedure for each Today widget
-        for (int appWidgetId : appWidgetIds) {
-            // Find the correct layout based on the widget's width
-            int widgetWidth = getWidgetWidth(appWidgetManager, appWidgetId);
-            int defaultWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
-            int largeWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_large_width);
-            int layoutId;
+        // Sort the widgets into layout buckets by width. Every widget in a bucket shows exactly
+        // the same views, so each bucket needs one RemoteViews and one update call.
+        int defaultWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
+        int largeWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_large_width);
+        int[] bucketSizes = new int[BUCKET_LAYOUTS.length];
+        int[] widgetBuckets = new int[appWidgetIds.length];
+        for (int i = 0; i < appWidgetIds.length; i++) {
+            int widgetWidth = getWidgetWidth(appWidgetManager, appWidgetIds[i]);
+            int bucket;
             if (widgetWidth >= largeWidth) {
-                layoutId = R.layout.widget_today_large;
+                bucket = BUCKET_LARGE;
             } else if (widgetWidth >= defaultWidth) {
-                layoutId = R.layout.widget_today;
+                bucket = BUCKET_DEFAULT;
             } else {
-                layoutId = R.layout.widget_today_small;
+                bucket = BUCKET_SMALL;
+            }
+            widgetBuckets[i] = bucket;
+            bucketSizes[bucket]++;
+        }
+
+        PendingIntent pendingIntent = null;
+        for (int bucket = 0; bucket < BUCKET_LAYOUTS.length; bucket++) {
+            int[] bucketIds = new int[bucketSizes[bucket]];
+            for (int i = 0, j = 0; i < appWidgetIds.length; i++) {
+                if (widgetBuckets[i] == bucket) {
+                    bucketIds[j++] = appWidgetIds[i];
+                }
+            }
+
+            // The widget ids are part of the hash so that a newly placed or resized widget is
+            // always drawn, even when the weather hasn't changed.
+            int contentHash = Arrays.hashCode(new Object[]{Arrays.hashCode(bucketIds),
+                    weatherArtResourceId, description, formattedMaxTemperature,
+                    formattedMinTemperature});
+            Integer lastContentHash = sLastContentHashes[bucket];
+            if (lastContentHash != null && lastContentHash == contentHash) {
+                continue;
             }
-            RemoteViews views = new RemoteViews(getPackageName(), layoutId);
+            sLastContentHashes[bucket] = contentHash;
+            if (bucketIds.length == 0) {
+                continue;
+            }
+
+            RemoteViews views = new RemoteViews(getPackageName(), BUCKET_LAYOUTS[bucket]);
 
             // Add the data to the RemoteViews
             views.setImageViewResource(R.id.widget_icon, weatherArtResourceId);
@@ -112,12 +155,14 @@ public class TodayWidgetIntentService extends IntentService {
             views.setTextViewText(R.id.widget_low_temperature, formattedMinTemperature);
 
             // Create an Intent to launch MainActivity
-            Intent launchIntent = new Intent(this, MainActivity.class);
-            PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, launchIntent, 0);
+            if (pendingIntent == null) {
+                Intent launchIntent = new Intent(this, MainActivity.class);
+                pendingIntent = PendingIntent.getActivity(this, 0, launchIntent, 0);
+            }
             views.setOnClickPendingIntent(R.id.widget, pendingIntent);
 
-            // Tell the AppWidgetManager to perform an update on the current app widget
-            appWidgetManager.updateAppWidget(appWidgetId, views);
+            // Tell the AppWidgetManager to perform an update on every widget in the bucket
+            appWidgetManager.updateAppWidget(bucketIds, views);
         }
     }
 
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.FutureTarget;
+import com.example.android.sunshine.shared.WeatherConditions;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Art pack icons for the widgets, decoded at the size they're drawn at and shared between rows
+ * and widget instances.
+ *
+ * Every condition code in a category draws the same art, so bitmaps are keyed by (category,
+ * size in pixels): a forecast of fourteen days usually needs three or four bitmaps. Sending a
+ * bitmap at icon size instead of the art's original resolution also keeps each RemoteViews
+ * transaction small.
+ */
+class WidgetIconCache {
+    private static final String LOG_TAG = WidgetIconCache.class.getSimpleName();
+
+    // Two sizes of every category is more than the widgets ever draw at once.
+    private static final int MAX_ENTRIES = 2 * WeatherConditions.CATEGORY_COUNT;
+
+    private static WidgetIconCache sInstance;
+
+    private final Context mContext;
+    private final LruCache<Long, Bitmap> mBitmaps = new LruCache<Long, Bitmap>(MAX_ENTRIES);
+    // The art pack the cached bitmaps came from
+    private String mArtPackFormat;
+
+    static synchronized WidgetIconCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WidgetIconCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WidgetIconCache(Context context) {
+        mContext = context;
+    }
+
+    private static long key(int category, int size) {
+        return ((long) category << 32) | size;
+    }
+
+    /**
+     * @return the icon for the category at the size, or null if it hasn't been rendered from
+     * this art pack.
+     */
+    Bitmap get(String artPackFormat, int category, int size) {
+        synchronized (this) {
+            if (!artPackFormat.equals(mArtPackFormat)) {
+                return null;
+            }
+        }
+        return mBitmaps.get(key(category, size));
+    }
+
+    /**
+     * Renders the icon of every category flagged in {@code categories} that isn't cached yet.
+     * All the missing icons are requested before waiting on any of them, so they download and
+     * decode in parallel. Blocks until they are all done; call it from a background thread.
+     *
+     * @param categories indexed by WeatherConditions category
+     * @param size width and height in pixels; the art is scaled to fit inside
+     */
+    void render(String artPackFormat, boolean[] categories, int size) {
+        synchronized (this) {
+            if (!artPackFormat.equals(mArtPackFormat)) {
+                mBitmaps.evictAll();
+                mArtPackFormat = artPackFormat;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        FutureTarget<Bitmap>[] targets = new FutureTarget[WeatherConditions.CATEGORY_COUNT];
+        for (int category = 0; category < WeatherConditions.CATEGORY_COUNT; category++) {
+            if (!categories[category] || mBitmaps.get(key(category, size)) != null) {
+                continue;
+            }
+            String artUrl = WeatherConditions.getArtUrlForCategory(artPackFormat, category);
+            if (artUrl == null) {
+                continue;
+            }
+            targets[category] = Glide.with(mContext)
+                    .load(artUrl)
+                    .asBitmap()
+                    .error(WeatherConditions.getIconResourceForCategory(category))
+                    .fitCenter()
+                    .into(size, size);
+        }
+
+        for (int category = 0; category < WeatherConditions.CATEGORY_COUNT; category++) {
+            FutureTarget<Bitmap> target = targets[category];
+            if (target == null) {
+                continue;
+            }
+            try {
+                mBitmaps.put(key(category, size), target.get());
+            } catch (InterruptedException | ExecutionException e) {
+                Log.e(LOG_TAG, "Error retrieving icon for category " + category, e);
+            }
+        }
+    }
+}
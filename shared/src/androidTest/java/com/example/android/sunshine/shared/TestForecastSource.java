@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+public class TestForecastSource extends AndroidTestCase {
+
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000;
+    private static final String FORECAST_JSON = forecastJson(0);
+    private static final String ETAG = "\"forecast-1\"";
+
+    /**
+     * @param firstDay the first day's offset from today
+     * @return a two day response, 800 then 501, as OpenWeatherMap sends it
+     */
+    private static String forecastJson(int firstDay) {
+        // OpenWeatherMap stamps each day at midday
+        Time time = new Time();
+        time.setToNow();
+        time.set(0, 0, 12, time.monthDay, time.month, time.year);
+        long midday = time.toMillis(false) / 1000;
+        return "{\"cod\":\"200\",\"list\":["
+                + "{\"dt\":" + (midday + firstDay * DAY_IN_MILLIS / 1000)
+                + ",\"temp\":{\"min\":11.5,\"max\":21.3},\"weather\":[{\"id\":800}]},"
+                + "{\"dt\":" + (midday + (firstDay + 1) * DAY_IN_MILLIS / 1000)
+                + ",\"temp\":{\"min\":9.0,\"max\":17.8},\"weather\":[{\"id\":501}]}]}";
+    }
+
+    private static int getTodayJulianDay() {
+        Time time = new Time();
+        time.setToNow();
+        return Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+    }
+
+    private MockServer mServer;
+    private File mCacheFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServer = new MockServer();
+        mCacheFile = new File(mContext.getCacheDir(), "test_forecast_source");
+        mCacheFile.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServer.shutdown();
+        mCacheFile.delete();
+        super.tearDown();
+    }
+
+    private ForecastSource createSource() {
+        return new ForecastSource(mServer.getUrl(), "test-key", mCacheFile);
+    }
+
+    public void testFetchParsesForecast() throws IOException {
+        mServer.enqueue("200 OK", "ETag: " + ETAG, FORECAST_JSON);
+        ForecastSource source = createSource();
+
+        WeatherForecast forecast = source.fetch(source.buildUrl("94043", 2), 5, true);
+
+        assertNotNull(forecast);
+        assertEquals(5, forecast.version);
+        assertEquals(getTodayJulianDay(), forecast.firstJulianDay);
+        assertTrue(forecast.isMetric);
+        assertEquals(2, forecast.getDayCount());
+        assertEquals(800, forecast.getWeatherId(0));
+        assertEquals(21.3, forecast.getHigh(0));
+        assertEquals(9.0, forecast.getLow(1));
+        assertTrue(mServer.getRequestLine(0).contains("q=94043"));
+        assertTrue(mServer.getRequestLine(0).contains("units=metric"));
+    }
+
+    public void testNotModifiedUsesCachedResponse() throws IOException {
+        mServer.enqueue("200 OK", "ETag: " + ETAG, FORECAST_JSON);
+        mServer.enqueue("304 Not Modified", null, null);
+        ForecastSource source = createSource();
+        String url = source.buildUrl("94043", 2);
+
+        WeatherForecast first = source.fetch(url, 1, true);
+        WeatherForecast second = source.fetch(url, 2, true);
+
+        assertNull(mServer.getHeader(0, "If-None-Match"));
+        assertEquals(ETAG, mServer.getHeader(1, "If-None-Match"));
+        assertNotNull(second);
+        assertEquals(first.contentHashCode(), second.contentHashCode());
+    }
+
+    public void testCachedResponseFromEarlierDayStartsToday() throws IOException {
+        // Fetched yesterday: yesterday and today
+        mServer.enqueue("200 OK", "ETag: " + ETAG, forecastJson(-1));
+        mServer.enqueue("304 Not Modified", null, null);
+        ForecastSource source = createSource();
+        String url = source.buildUrl("94043", 2);
+
+        source.fetch(url, 1, true);
+        WeatherForecast revalidated = source.fetch(url, 2, true);
+
+        assertEquals(ETAG, mServer.getHeader(1, "If-None-Match"));
+        assertNotNull(revalidated);
+        assertEquals(getTodayJulianDay(), revalidated.firstJulianDay);
+        assertEquals(1, revalidated.getDayCount());
+        assertEquals(501, revalidated.getWeatherId(0));
+    }
+
+    public void testResponseWithOnlyPastDays() throws IOException {
+        mServer.enqueue("200 OK", "ETag: " + ETAG, forecastJson(-2));
+        ForecastSource source = createSource();
+
+        assertNull(source.fetch(source.buildUrl("94043", 2), 1, true));
+    }
+
+    public void testOtherUrlIsNotConditional() throws IOException {
+        mServer.enqueue("200 OK", "ETag: " + ETAG, FORECAST_JSON);
+        mServer.enqueue("200 OK", "ETag: " + ETAG, FORECAST_JSON);
+        ForecastSource source = createSource();
+
+        source.fetch(source.buildUrl("94043", 2), 1, true);
+        source.fetch(source.buildUrl(37.4f, -122.1f, 2), 1, true);
+
+        assertNull(mServer.getHeader(1, "If-None-Match"));
+    }
+
+    public void testUnknownLocationAndServerError() throws IOException {
+        mServer.enqueue("404 Not Found", null, "{\"cod\":\"404\"}");
+        mServer.enqueue("500 Internal Server Error", null, "");
+        ForecastSource source = createSource();
+        String url = source.buildUrl("nowhere", 2);
+
+        assertNull(source.fetch(url, 1, true));
+        try {
+            source.fetch(url, 1, true);
+            fail("Error: a server error should throw");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Answers one request per connection on the loopback interface with queued responses, and
+     * records what it was sent.
+     */
+    private static final class MockServer implements Runnable {
+        private final ServerSocket mSocket;
+        private final LinkedList<String[]> mResponses = new LinkedList<String[]>();
+        private final List<List<String>> mRequests = new ArrayList<List<String>>();
+        private final Thread mThread;
+
+        MockServer() throws IOException {
+            mSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+            mThread = new Thread(this, "MockServer");
+            mThread.start();
+        }
+
+        String getUrl() {
+            return "http://127.0.0.1:" + mSocket.getLocalPort() + "/forecast/daily";
+        }
+
+        synchronized void enqueue(String status, String header, String body) {
+            mResponses.add(new String[]{status, header, body});
+        }
+
+        synchronized String getRequestLine(int request) {
+            return mRequests.get(request).get(0);
+        }
+
+        synchronized String getHeader(int request, String name) {
+            for (String line : mRequests.get(request)) {
+                if (line.regionMatches(true, 0, name + ":", 0, name.length() + 1)) {
+                    return line.substring(name.length() + 1).trim();
+                }
+            }
+            return null;
+        }
+
+        void shutdown() throws IOException {
+            mSocket.close();
+        }
+
+        @Override
+        public void run() {
+            while (!mSocket.isClosed()) {
+                try {
+                    Socket socket = mSocket.accept();
+                    try {
+                        serve(socket);
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    // Closed by shutdown()
+                }
+            }
+        }
+
+        private void serve(Socket socket) throws IOException {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            List<String> request = new ArrayList<String>();
+            String line;
+            while ((line = reader.readLine()) != null && line.length() > 0) {
+                request.add(line);
+            }
+            String[] response;
+            synchronized (this) {
+                mRequests.add(request);
+                response = mResponses.poll();
+            }
+            if (response == null) {
+                response = new String[]{"500 Internal Server Error", null, ""};
+            }
+
+            byte[] body = response[2] != null ? response[2].getBytes("UTF-8") : new byte[0];
+            StringBuilder head = new StringBuilder("HTTP/1.1 ").append(response[0]).append("\r\n");
+            if (response[1] != null) {
+                head.append(response[1]).append("\r\n");
+            }
+            head.append("Content-Length: ").append(body.length).append("\r\n")
+                    .append("Connection: close\r\n\r\n");
+            OutputStream out = socket.getOutputStream();
+            out.write(head.toString().getBytes("UTF-8"));
+            out.write(body);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import android.test.AndroidTestCase;
+
+public class TestWatchProtocol extends AndroidTestCase {
+
+    private static WeatherForecast createForecast(long version, double high) {
+        return new WeatherForecast(version, 2457000, true,
+                new int[]{800, 500},
+                new double[]{high, 18.0},
+                new double[]{10.0, 9.5});
+    }
+
+    public void testRequestMatchesSameContent() {
+        byte[] request = WatchProtocol.createRequest(createForecast(3, 21.0));
+
+        assertTrue(WatchProtocol.isCurrent(request, createForecast(4, 21.0)));
+        assertFalse(WatchProtocol.isCurrent(request, createForecast(3, 22.0)));
+    }
+
+    public void testRequestWithoutForecastNeverMatches() {
+        byte[] request = WatchProtocol.createRequest(null);
+
+        assertFalse(WatchProtocol.isCurrent(request, createForecast(1, 21.0)));
+        assertFalse(WatchProtocol.isCurrent(new byte[0], createForecast(1, 21.0)));
+    }
+
+    public void testResponses() {
+        WeatherForecast forecast = createForecast(7, 21.0);
+
+        byte[] current = WatchProtocol.createResponse(WatchProtocol.STATUS_CURRENT, forecast);
+        assertEquals(1, current.length);
+        assertEquals(WatchProtocol.STATUS_CURRENT, WatchProtocol.getStatus(current));
+        assertNull(WatchProtocol.getForecast(current));
+
+        byte[] full = WatchProtocol.createResponse(WatchProtocol.STATUS_FORECAST, forecast);
+        assertEquals(WatchProtocol.STATUS_FORECAST, WatchProtocol.getStatus(full));
+        WeatherForecast decoded = WatchProtocol.getForecast(full);
+        assertNotNull(decoded);
+        assertEquals(7, decoded.version);
+        assertEquals(forecast.contentHashCode(), decoded.contentHashCode());
+
+        assertEquals(-1, WatchProtocol.getStatus(new byte[0]));
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import android.content.res.Resources;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/*
+    Checks the condition table against the if-chains the phone and the watch used before they
+    shared it, and times a table lookup against a chain walk.
+ */
+public class TestWeatherConditions extends AndroidTestCase {
+    private static final String LOG_TAG = TestWeatherConditions.class.getSimpleName();
+
+    private static final int LOOKUP_ITERATIONS = 200;
+
+    // The phone's original Utility.getIconResourceForWeatherCondition
+    private static int phoneIconChain(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.drawable.ic_storm;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.drawable.ic_light_rain;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return R.drawable.ic_rain;
+        } else if (weatherId == 511) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return R.drawable.ic_rain;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return R.drawable.ic_fog;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return R.drawable.ic_storm;
+        } else if (weatherId == 800) {
+            return R.drawable.ic_clear;
+        } else if (weatherId == 801) {
+            return R.drawable.ic_light_clouds;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return R.drawable.ic_cloudy;
+        }
+        return -1;
+    }
+
+    // The watch's original SunshineWatchFaceUtil.getWeatherConditionImage
+    private static int watchIconChain(int conditionCode) {
+        if ((conditionCode >= 200 && conditionCode <= 232) || conditionCode == 761 || conditionCode == 781) {
+            return R.drawable.ic_storm;
+        } else if (conditionCode >= 300 && conditionCode <= 321) {
+            return R.drawable.ic_light_rain;
+        } else if ((conditionCode >= 500 && conditionCode <= 504) || (conditionCode >= 520 && conditionCode <= 531)) {
+            return R.drawable.ic_rain;
+        } else if (conditionCode == 511 || (conditionCode >= 600 && conditionCode <= 622)) {
+            return R.drawable.ic_snow;
+        } else if (conditionCode >= 701 && conditionCode <= 761) {
+            return R.drawable.ic_fog;
+        } else if (conditionCode == 800) {
+            return R.drawable.ic_clear;
+        } else if (conditionCode == 801) {
+            return R.drawable.ic_light_clouds;
+        } else if (conditionCode >= 802 && conditionCode <= 804) {
+            return R.drawable.ic_cloudy;
+        }
+        return 0;
+    }
+
+    public void testIconsMatchPhoneChain() {
+        for (int code = -1; code <= 1000; code++) {
+            assertEquals("Error: icon for condition " + code + " differs from the phone mapping",
+                    phoneIconChain(code), WeatherConditions.getIconResource(code));
+        }
+    }
+
+    public void testIconsMatchWatchChain() {
+        for (int code = -1; code <= 1000; code++) {
+            int watch = watchIconChain(code);
+            // 761 (dust) is where the two chains used to disagree: the watch drew a storm while
+            // the phone drew fog. The table follows the phone.
+            if (code == 761) {
+                assertEquals(R.drawable.ic_fog, WeatherConditions.getIconResource(code));
+            } else if (watch == 0) {
+                assertEquals(-1, WeatherConditions.getIconResource(code));
+            } else {
+                assertEquals("Error: icon for condition " + code + " differs from the watch mapping",
+                        watch, WeatherConditions.getIconResource(code));
+            }
+        }
+    }
+
+    public void testArtAndSlugFollowCategory() {
+        Resources resources = getContext().getResources();
+        for (int code = 0; code < 1000; code++) {
+            int art = WeatherConditions.getArtResource(code);
+            String slug = WeatherConditions.getArtSlug(code);
+            if (WeatherConditions.getCategory(code) == WeatherConditions.CATEGORY_NONE) {
+                assertEquals(-1, art);
+                assertNull(slug);
+                assertNull(WeatherConditions.getImageUrl(code));
+            } else {
+                assertEquals("Error: art and url slug disagree for condition " + code,
+                        "art_" + slug, resources.getResourceEntryName(art));
+                assertNotNull(WeatherConditions.getImageUrl(code));
+            }
+        }
+    }
+
+    public void testStringsNameTheirCode() {
+        Resources resources = getContext().getResources();
+        for (int code = 0; code < 1000; code++) {
+            int stringRes = WeatherConditions.getStringResource(code);
+            if (stringRes == 0) {
+                assertEquals(getContext().getString(R.string.condition_unknown, code),
+                        WeatherConditions.getString(getContext(), code));
+                continue;
+            }
+            String expected = code < 300 ? "condition_2xx"
+                    : code < 400 ? "condition_3xx"
+                    : "condition_" + code;
+            assertEquals(expected, resources.getResourceEntryName(stringRes));
+        }
+    }
+
+    public void testLookupTiming() {
+        // Warm up both paths before timing them
+        int sink = 0;
+        for (int code = 0; code < 1000; code++) {
+            sink += phoneIconChain(code) + WeatherConditions.getIconResource(code);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUP_ITERATIONS; i++) {
+            for (int code = 0; code < 1000; code++) {
+                sink += phoneIconChain(code);
+            }
+        }
+        long chainNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUP_ITERATIONS; i++) {
+            for (int code = 0; code < 1000; code++) {
+                sink += WeatherConditions.getIconResource(code);
+            }
+        }
+        long tableNanos = System.nanoTime() - start;
+
+        int lookups = LOOKUP_ITERATIONS * 1000;
+        Log.i(LOG_TAG, "if-chain: " + (chainNanos / lookups) + " ns/lookup, table: "
+                + (tableNanos / lookups) + " ns/lookup (" + sink + ")");
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import android.test.AndroidTestCase;
+
+import java.util.Arrays;
+
+public class TestWeatherForecast extends AndroidTestCase {
+
+    private static final int FIRST_JULIAN_DAY = 2457000;
+
+    private static WeatherForecast createForecast() {
+        return new WeatherForecast(42, FIRST_JULIAN_DAY, false,
+                new int[]{800, 801, 500, 211, 804},
+                new double[]{21.34, 19.0, -3.25, 0.0, 35.5},
+                new double[]{12.0, 11.5, -15.0, -0.04, 20.1});
+    }
+
+    public void testRoundTrip() {
+        WeatherForecast forecast = createForecast();
+        byte[] bytes = forecast.toByteArray();
+        WeatherForecast decoded = WeatherForecast.fromByteArray(bytes);
+
+        assertNotNull(decoded);
+        assertEquals(42, decoded.version);
+        assertEquals(FIRST_JULIAN_DAY, decoded.firstJulianDay);
+        assertFalse(decoded.isMetric);
+        assertEquals(forecast.getDayCount(), decoded.getDayCount());
+        for (int day = 0; day < forecast.getDayCount(); day++) {
+            assertEquals(forecast.getWeatherId(day), decoded.getWeatherId(day));
+            assertEquals(forecast.getHigh(day), decoded.getHigh(day));
+            assertEquals(forecast.getLow(day), decoded.getLow(day));
+        }
+        assertEquals(21.3, decoded.getHigh(0));
+        assertEquals(0.0, decoded.getLow(3));
+        // Deltas keep the whole thing to a couple of bytes per value
+        assertTrue("Error: " + bytes.length + " bytes", bytes.length < 40);
+    }
+
+    public void testDayIndex() {
+        WeatherForecast forecast = createForecast();
+        assertEquals(0, forecast.getDayIndex(FIRST_JULIAN_DAY));
+        assertEquals(4, forecast.getDayIndex(FIRST_JULIAN_DAY + 4));
+        assertEquals(-1, forecast.getDayIndex(FIRST_JULIAN_DAY - 1));
+        assertEquals(-1, forecast.getDayIndex(FIRST_JULIAN_DAY + 5));
+    }
+
+    public void testRejectsUnknownOrTruncatedBytes() {
+        byte[] bytes = createForecast().toByteArray();
+
+        byte[] future = bytes.clone();
+        future[0] = WeatherForecast.SCHEMA_VERSION + 1;
+        assertNull(WeatherForecast.fromByteArray(future));
+        assertNull(WeatherForecast.fromByteArray(Arrays.copyOf(bytes, bytes.length - 1)));
+        assertNull(WeatherForecast.fromByteArray(new byte[0]));
+    }
+
+    public void testContentHashIgnoresVersion() {
+        WeatherForecast forecast = createForecast();
+        WeatherForecast republished = new WeatherForecast(forecast.version + 1,
+                FIRST_JULIAN_DAY, false,
+                new int[]{800, 801, 500, 211, 804},
+                new double[]{21.3, 19.0, -3.2, 0.0, 35.5},
+                new double[]{12.0, 11.5, -15.0, 0.0, 20.1});
+        WeatherForecast changed = new WeatherForecast(forecast.version,
+                FIRST_JULIAN_DAY, false,
+                new int[]{800, 801, 500, 211, 804},
+                new double[]{21.3, 19.0, -3.2, 0.0, 35.5},
+                new double[]{12.0, 11.5, -15.0, 0.0, 20.2});
+
+        assertEquals(forecast.contentHashCode(), republished.contentHashCode());
+        assertFalse(forecast.contentHashCode() == changed.contentHashCode());
+
+        WeatherForecast retagged = forecast.withVersion(7);
+        assertEquals(7, retagged.version);
+        assertEquals(forecast.contentHashCode(), retagged.contentHashCode());
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import android.net.Uri;
+import android.text.format.Time;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+
+/**
+ * Fetches the daily forecast from OpenWeatherMap straight into a {@link WeatherForecast}, for a
+ * device that has no database to put it in.
+ *
+ * The last response is kept in a file along with its validators, and the next request for the
+ * same URL is made conditional on them, so when the forecast hasn't changed the server answers
+ * 304 with no body and the cached one is parsed again. Days are placed by their own timestamps,
+ * not by when they were fetched, so a cached response parsed on a later day starts from the new
+ * today. The base URL is a parameter, so tests can point it at a local server.
+ */
+public final class ForecastSource {
+    private static final String LOG_TAG = ForecastSource.class.getSimpleName();
+
+    public static final String OPEN_WEATHER_MAP_URL =
+            "http://api.openweathermap.org/data/2.5/forecast/daily";
+
+    private static final int TIMEOUT_MILLIS = 15000;
+    private static final int CACHE_VERSION = 1;
+
+    private final String mBaseUrl;
+    private final String mApiKey;
+    private final File mCacheFile;
+
+    /**
+     * @param cacheFile where the last response is kept; its directory must exist
+     */
+    public ForecastSource(String baseUrl, String apiKey, File cacheFile) {
+        mBaseUrl = baseUrl;
+        mApiKey = apiKey;
+        mCacheFile = cacheFile;
+    }
+
+    public String buildUrl(String location, int days) {
+        return buildUpon(days).appendQueryParameter("q", location).build().toString();
+    }
+
+    public String buildUrl(float latitude, float longitude, int days) {
+        return buildUpon(days)
+                .appendQueryParameter("lat", String.valueOf(latitude))
+                .appendQueryParameter("lon", String.valueOf(longitude))
+                .build().toString();
+    }
+
+    private Uri.Builder buildUpon(int days) {
+        // Temperatures always come in Celsius, which is what WeatherForecast keeps
+        return Uri.parse(mBaseUrl).buildUpon()
+                .appendQueryParameter("mode", "json")
+                .appendQueryParameter("units", "metric")
+                .appendQueryParameter("cnt", Integer.toString(days))
+                .appendQueryParameter("APPID", mApiKey);
+    }
+
+    /**
+     * Blocks on the network; call it off the main thread.
+     *
+     * @param version the version to give the forecast
+     * @param isMetric how the forecast's temperatures should be shown
+     * @return the forecast, or null if the server doesn't know the location or sent something
+     *         unreadable
+     * @throws IOException if the server couldn't be reached or failed
+     */
+    public WeatherForecast fetch(String url, long version, boolean isMetric) throws IOException {
+        CachedResponse cached = readCache();
+        if (cached != null && !cached.url.equals(url)) {
+            cached = null;
+        }
+
+        String body;
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            // Validation is done here, against our own copy, not by a shared HTTP cache
+            connection.setUseCaches(false);
+            if (cached != null) {
+                if (cached.etag.length() > 0) {
+                    connection.setRequestProperty("If-None-Match", cached.etag);
+                }
+                if (cached.lastModified.length() > 0) {
+                    connection.setRequestProperty("If-Modified-Since", cached.lastModified);
+                }
+            }
+
+            int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                body = cached.body;
+            } else if (responseCode == HttpURLConnection.HTTP_OK) {
+                body = readBody(connection.getInputStream());
+                writeCache(new CachedResponse(url, connection.getHeaderField("ETag"),
+                        connection.getHeaderField("Last-Modified"), body));
+            } else if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            } else {
+                throw new IOException("Forecast request failed: " + responseCode);
+            }
+        } finally {
+            connection.disconnect();
+        }
+
+        try {
+            return parse(body, version, isMetric, System.currentTimeMillis());
+        } catch (JSONException e) {
+            Log.w(LOG_TAG, "Unreadable forecast", e);
+            return null;
+        }
+    }
+
+    /**
+     * @param now the time to take today from
+     * @return the consecutive days in an OpenWeatherMap daily response from today on, or null if
+     *         the response is an error or has none
+     */
+    static WeatherForecast parse(String body, long version, boolean isMetric, long now)
+            throws JSONException {
+        JSONObject forecastJson = new JSONObject(body);
+        if (forecastJson.has("cod")
+                && forecastJson.getInt("cod") != HttpURLConnection.HTTP_OK) {
+            return null;
+        }
+        JSONArray list = forecastJson.getJSONArray("list");
+        Time time = new Time();
+        int todayJulianDay = getJulianDay(time, now);
+        int firstJulianDay = 0;
+        int days = 0;
+        int[] weatherIds = new int[Math.min(list.length(), WeatherForecast.MAX_DAYS)];
+        double[] highs = new double[weatherIds.length];
+        double[] lows = new double[weatherIds.length];
+        for (int i = 0; i < list.length() && days < weatherIds.length; i++) {
+            JSONObject day = list.getJSONObject(i);
+            // dt is in seconds
+            int julianDay = getJulianDay(time, day.getLong("dt") * 1000);
+            if (julianDay < todayJulianDay) {
+                // Fetched on an earlier day
+                continue;
+            }
+            if (days == 0) {
+                firstJulianDay = julianDay;
+            } else if (julianDay != firstJulianDay + days) {
+                // The watch finds a day by its offset from the first, so stop at the first gap
+                break;
+            }
+            weatherIds[days] = day.getJSONArray("weather").getJSONObject(0).getInt("id");
+            JSONObject temperature = day.getJSONObject("temp");
+            highs[days] = temperature.getDouble("max");
+            lows[days] = temperature.getDouble("min");
+            days++;
+        }
+        if (days == 0) {
+            return null;
+        }
+        if (days < weatherIds.length) {
+            weatherIds = Arrays.copyOf(weatherIds, days);
+            highs = Arrays.copyOf(highs, days);
+            lows = Arrays.copyOf(lows, days);
+        }
+        return new WeatherForecast(version, firstJulianDay, isMetric, weatherIds, highs, lows);
+    }
+
+    private static int getJulianDay(Time time, long millis) {
+        time.set(millis);
+        return Time.getJulianDay(millis, time.gmtoff);
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    private CachedResponse readCache() {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(mCacheFile));
+            if (in.readByte() != CACHE_VERSION) {
+                return null;
+            }
+            String url = in.readUTF();
+            String etag = in.readUTF();
+            String lastModified = in.readUTF();
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new CachedResponse(url, etag, lastModified, new String(body, "UTF-8"));
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Forecast cache unreadable", e);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Already read
+                }
+            }
+        }
+    }
+
+    private void writeCache(CachedResponse response) {
+        if (response.etag.length() == 0 && response.lastModified.length() == 0) {
+            // Nothing to validate it with; it would never be used
+            mCacheFile.delete();
+            return;
+        }
+        // Written beside the cache and renamed over it, so a reader never sees half a response
+        File tempFile = new File(mCacheFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new FileOutputStream(tempFile));
+            byte[] body = response.body.getBytes("UTF-8");
+            out.writeByte(CACHE_VERSION);
+            out.writeUTF(response.url);
+            out.writeUTF(response.etag);
+            out.writeUTF(response.lastModified);
+            out.writeInt(body.length);
+            out.write(body);
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(mCacheFile)) {
+                Log.w(LOG_TAG, "Couldn't replace the forecast cache");
+            }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Couldn't write the forecast cache", e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // Being discarded anyway
+                }
+            }
+            tempFile.delete();
+        }
+    }
+
+    private static final class CachedResponse {
+        final String url;
+        final String etag;
+        final String lastModified;
+        final String body;
+
+        CachedResponse(String url, String etag, String lastModified, String body) {
+            this.url = url;
+            this.etag = etag != null ? etag : "";
+            this.lastModified = lastModified != null ? lastModified : "";
+            this.body = body;
+        }
+    }
+}
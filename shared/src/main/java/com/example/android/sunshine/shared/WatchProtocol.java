@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * How the watch asks the phone for the forecast, over the message API rather than the data layer.
+ *
+ * The watch sends a request to a node with {@link #CAPABILITY_WEATHER}, carrying the version and
+ * content hash of the forecast it has. The phone answers from its database: with
+ * {@link #STATUS_CURRENT} and nothing else if the watch already shows what the phone has, with
+ * {@link #STATUS_FORECAST} and the encoded forecast if not, or with {@link #STATUS_UNAVAILABLE} if
+ * the phone has nothing for today, in which case it syncs and publishes the result as usual.
+ * Messages aren't stored or replicated, so a request leaves nothing behind on either side.
+ */
+public final class WatchProtocol {
+
+    /** Declared by the phone app, so the watch can find a node that answers requests. */
+    public static final String CAPABILITY_WEATHER = "sunshine_weather";
+
+    public static final String REQUEST_PATH = "/weather/request";
+    public static final String RESPONSE_PATH = "/weather/response";
+
+    /** The watch's forecast is the phone's. */
+    public static final int STATUS_CURRENT = 0;
+    /** The phone's forecast follows. */
+    public static final int STATUS_FORECAST = 1;
+    /** The phone has no forecast for today yet. */
+    public static final int STATUS_UNAVAILABLE = 2;
+
+    /** Stands in for the version of a forecast the watch doesn't have. */
+    public static final long NO_VERSION = -1;
+
+    private static final int REQUEST_SIZE = 8 + 4;
+
+    private WatchProtocol() {
+    }
+
+    /**
+     * @param current the forecast the watch has, null if none
+     */
+    public static byte[] createRequest(WeatherForecast current) {
+        return ByteBuffer.allocate(REQUEST_SIZE)
+                .putLong(current != null ? current.version : NO_VERSION)
+                .putInt(current != null ? current.contentHashCode() : 0)
+                .array();
+    }
+
+    /**
+     * @return whether the request says the watch already has a forecast with this content
+     */
+    public static boolean isCurrent(byte[] request, WeatherForecast forecast) {
+        if (request == null || request.length < REQUEST_SIZE) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(request);
+        return buffer.getLong() != NO_VERSION && buffer.getInt() == forecast.contentHashCode();
+    }
+
+    /**
+     * @param forecast the phone's forecast; only sent with {@link #STATUS_FORECAST}
+     */
+    public static byte[] createResponse(int status, WeatherForecast forecast) {
+        if (status != STATUS_FORECAST) {
+            return new byte[]{(byte) status};
+        }
+        byte[] bytes = forecast.toByteArray();
+        byte[] response = new byte[bytes.length + 1];
+        response[0] = (byte) status;
+        System.arraycopy(bytes, 0, response, 1, bytes.length);
+        return response;
+    }
+
+    /**
+     * @return one of the STATUS_ constants, or -1 if the response is empty
+     */
+    public static int getStatus(byte[] response) {
+        return response != null && response.length > 0 ? response[0] : -1;
+    }
+
+    /**
+     * @return the forecast in a {@link #STATUS_FORECAST} response, null otherwise or if it can't
+     *         be read
+     */
+    public static WeatherForecast getForecast(byte[] response) {
+        if (getStatus(response) != STATUS_FORECAST) {
+            return null;
+        }
+        return WeatherForecast.fromByteArray(Arrays.copyOfRange(response, 1, response.length));
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import android.content.Context;
+
+import java.util.Locale;
+
+/**
+ * The one table mapping OpenWeatherMap condition codes to icons, art, descriptions and urls.
+ * Both the phone app and the watch face read from here so they can never disagree.
+ *
+ * The table is declared once, as ranges of codes, and compiled into dense arrays indexed by
+ * condition code when the class is loaded. A lookup is then a bounds check and an array read
+ * rather than a walk through a chain of range comparisons.
+ */
+public final class WeatherConditions {
+
+    public static final int CATEGORY_NONE = 0;
+    public static final int CATEGORY_STORM = 1;
+    public static final int CATEGORY_LIGHT_RAIN = 2;
+    public static final int CATEGORY_RAIN = 3;
+    public static final int CATEGORY_SNOW = 4;
+    public static final int CATEGORY_FOG = 5;
+    public static final int CATEGORY_CLEAR = 6;
+    public static final int CATEGORY_LIGHT_CLOUDS = 7;
+    public static final int CATEGORY_CLOUDS = 8;
+    public static final int CATEGORY_COUNT = 9;
+
+    // Every OpenWeatherMap condition code is below this value.
+    private static final int CODE_LIMIT = 1000;
+
+    // These columns are indexed by category.
+    private static final String[] CATEGORY_SLUGS = {
+            null, "storm", "light_rain", "rain", "snow", "fog", "clear", "light_clouds", "clouds"
+    };
+    private static final String[] CATEGORY_IMAGE_URLS = {
+            null,
+            "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg"
+    };
+    private static final String TORNADO_IMAGE_URL =
+            "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg";
+
+    // These columns are indexed by condition code.
+    private static final byte[] sCategory = new byte[CODE_LIMIT];
+    private static final int[] sIconRes = new int[CODE_LIMIT];
+    private static final int[] sArtRes = new int[CODE_LIMIT];
+    private static final int[] sStringRes = new int[CODE_LIMIT];
+    private static final String[] sSlug = new String[CODE_LIMIT];
+    private static final String[] sImageUrl = new String[CODE_LIMIT];
+
+    static {
+        // Based on weather code data found at:
+        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+        category(200, 232, CATEGORY_STORM);
+        category(300, 321, CATEGORY_LIGHT_RAIN);
+        category(500, 504, CATEGORY_RAIN);
+        category(511, 511, CATEGORY_SNOW);
+        category(520, 531, CATEGORY_RAIN);
+        category(600, 622, CATEGORY_SNOW);
+        category(701, 761, CATEGORY_FOG);
+        category(781, 781, CATEGORY_STORM);
+        category(800, 800, CATEGORY_CLEAR);
+        category(801, 801, CATEGORY_LIGHT_CLOUDS);
+        category(802, 804, CATEGORY_CLOUDS);
+
+        sImageUrl[781] = TORNADO_IMAGE_URL;
+
+        string(200, 232, R.string.condition_2xx);
+        string(300, 321, R.string.condition_3xx);
+        string(500, R.string.condition_500);
+        string(501, R.string.condition_501);
+        string(502, R.string.condition_502);
+        string(503, R.string.condition_503);
+        string(504, R.string.condition_504);
+        string(511, R.string.condition_511);
+        string(520, R.string.condition_520);
+        string(521, R.string.condition_521);
+        string(522, R.string.condition_522);
+        string(531, R.string.condition_531);
+        string(600, R.string.condition_600);
+        string(601, R.string.condition_601);
+        string(602, R.string.condition_602);
+        string(611, R.string.condition_611);
+        string(612, R.string.condition_612);
+        string(615, R.string.condition_615);
+        string(616, R.string.condition_616);
+        string(620, R.string.condition_620);
+        string(621, R.string.condition_621);
+        string(622, R.string.condition_622);
+        string(701, R.string.condition_701);
+        string(711, R.string.condition_711);
+        string(721, R.string.condition_721);
+        string(731, R.string.condition_731);
+        string(741, R.string.condition_741);
+        string(751, R.string.condition_751);
+        string(761, R.string.condition_761);
+        string(762, R.string.condition_762);
+        string(771, R.string.condition_771);
+        string(781, R.string.condition_781);
+        string(800, R.string.condition_800);
+        string(801, R.string.condition_801);
+        string(802, R.string.condition_802);
+        string(803, R.string.condition_803);
+        string(804, R.string.condition_804);
+        string(900, R.string.condition_900);
+        string(901, R.string.condition_901);
+        string(902, R.string.condition_902);
+        string(903, R.string.condition_903);
+        string(904, R.string.condition_904);
+        string(905, R.string.condition_905);
+        string(906, R.string.condition_906);
+        string(951, R.string.condition_951);
+        string(952, R.string.condition_952);
+        string(953, R.string.condition_953);
+        string(954, R.string.condition_954);
+        string(955, R.string.condition_955);
+        string(956, R.string.condition_956);
+        string(957, R.string.condition_957);
+        string(958, R.string.condition_958);
+        string(959, R.string.condition_959);
+        string(960, R.string.condition_960);
+        string(961, R.string.condition_961);
+        string(962, R.string.condition_962);
+    }
+
+    private WeatherConditions() {
+    }
+
+    private static void category(int firstCode, int lastCode, int category) {
+        int iconRes = getIconResourceForCategory(category);
+        int artRes = getArtResourceForCategory(category);
+        for (int code = firstCode; code <= lastCode; code++) {
+            sCategory[code] = (byte) category;
+            sIconRes[code] = iconRes;
+            sArtRes[code] = artRes;
+            sSlug[code] = CATEGORY_SLUGS[category];
+            sImageUrl[code] = CATEGORY_IMAGE_URLS[category];
+        }
+    }
+
+    private static void string(int firstCode, int lastCode, int stringRes) {
+        for (int code = firstCode; code <= lastCode; code++) {
+            sStringRes[code] = stringRes;
+        }
+    }
+
+    private static void string(int code, int stringRes) {
+        sStringRes[code] = stringRes;
+    }
+
+    private static boolean isKnown(int weatherId) {
+        return weatherId >= 0 && weatherId < CODE_LIMIT;
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return one of the CATEGORY_ constants, CATEGORY_NONE if no relation is found.
+     */
+    public static int getCategory(int weatherId) {
+        return isKnown(weatherId) ? sCategory[weatherId] : CATEGORY_NONE;
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return resource id for the corresponding icon. -1 if no relation is found.
+     */
+    public static int getIconResource(int weatherId) {
+        return getCategory(weatherId) != CATEGORY_NONE ? sIconRes[weatherId] : -1;
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return resource id for the corresponding art. -1 if no relation is found.
+     */
+    public static int getArtResource(int weatherId) {
+        return getCategory(weatherId) != CATEGORY_NONE ? sArtRes[weatherId] : -1;
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return resource id for the condition description. 0 if no relation is found.
+     */
+    public static int getStringResource(int weatherId) {
+        return isKnown(weatherId) ? sStringRes[weatherId] : 0;
+    }
+
+    /**
+     * @param context Context to use for resource localization
+     * @param weatherId from OpenWeatherMap API response
+     * @return description of the condition, or a generic "Unknown" string naming the code.
+     */
+    public static String getString(Context context, int weatherId) {
+        int stringRes = getStringResource(weatherId);
+        if (stringRes == 0) {
+            return context.getString(R.string.condition_unknown, weatherId);
+        }
+        return context.getString(stringRes);
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return the slug used to name art in an art pack, e.g "light_rain". null if no relation
+     * is found.
+     */
+    public static String getArtSlug(int weatherId) {
+        return isKnown(weatherId) ? sSlug[weatherId] : null;
+    }
+
+    /**
+     * @param artPackFormat art pack url with a single %s where the art slug goes
+     * @param weatherId from OpenWeatherMap API response
+     * @return url for the corresponding weather artwork. null if no relation is found.
+     */
+    public static String getArtUrl(String artPackFormat, int weatherId) {
+        String slug = getArtSlug(weatherId);
+        return slug != null ? String.format(Locale.US, artPackFormat, slug) : null;
+    }
+
+    /**
+     * @param artPackFormat art pack url with a single %s where the art slug goes
+     * @return url of the artwork drawn for every code in the category, null for CATEGORY_NONE.
+     */
+    public static String getArtUrlForCategory(String artPackFormat, int category) {
+        String slug = category > CATEGORY_NONE && category < CATEGORY_COUNT
+                ? CATEGORY_SLUGS[category] : null;
+        return slug != null ? String.format(Locale.US, artPackFormat, slug) : null;
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return A string URL to an appropriate photograph or null if no mapping is found
+     */
+    public static String getImageUrl(int weatherId) {
+        return isKnown(weatherId) ? sImageUrl[weatherId] : null;
+    }
+
+    /**
+     * @return resource id of the icon drawn for every code in the category, -1 for CATEGORY_NONE.
+     */
+    public static int getIconResourceForCategory(int category) {
+        switch (category) {
+            case CATEGORY_STORM:
+                return R.drawable.ic_storm;
+            case CATEGORY_LIGHT_RAIN:
+                return R.drawable.ic_light_rain;
+            case CATEGORY_RAIN:
+                return R.drawable.ic_rain;
+            case CATEGORY_SNOW:
+                return R.drawable.ic_snow;
+            case CATEGORY_FOG:
+                return R.drawable.ic_fog;
+            case CATEGORY_CLEAR:
+                return R.drawable.ic_clear;
+            case CATEGORY_LIGHT_CLOUDS:
+                return R.drawable.ic_light_clouds;
+            case CATEGORY_CLOUDS:
+                return R.drawable.ic_cloudy;
+        }
+        return -1;
+    }
+
+    /**
+     * @return resource id of the art drawn for every code in the category, -1 for CATEGORY_NONE.
+     */
+    public static int getArtResourceForCategory(int category) {
+        switch (category) {
+            case CATEGORY_STORM:
+                return R.drawable.art_storm;
+            case CATEGORY_LIGHT_RAIN:
+                return R.drawable.art_light_rain;
+            case CATEGORY_RAIN:
+                return R.drawable.art_rain;
+            case CATEGORY_SNOW:
+                return R.drawable.art_snow;
+            case CATEGORY_FOG:
+                return R.drawable.art_fog;
+            case CATEGORY_CLEAR:
+                return R.drawable.art_clear;
+            case CATEGORY_LIGHT_CLOUDS:
+                return R.drawable.art_light_clouds;
+            case CATEGORY_CLOUDS:
+                return R.drawable.art_clouds;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * The forecast horizon the phone publishes for the watch, and its binary encoding.
+ *
+ * Days are consecutive, starting at {@link #firstJulianDay}, so the watch can find today (and
+ * roll over to tomorrow at midnight) without asking the phone. Temperatures are kept in tenths of
+ * a degree Celsius; {@link #isMetric} says how the user wants them shown.
+ *
+ * The encoding is a schema version byte, a header, and one packed column per value. Each value is
+ * written as a zigzag varint of its difference from the value before it in the column, so a
+ * two-week forecast, whose codes and temperatures change little from day to day, takes a few dozen
+ * bytes. Lows are written against the same day's high. Every asset is self-contained: the data
+ * layer only delivers the latest version of an item, so the watch can't be assumed to have seen
+ * the one before.
+ */
+public final class WeatherForecast {
+
+    /** Bumped whenever the encoding changes; readers reject versions they don't know. */
+    public static final int SCHEMA_VERSION = 1;
+
+    private static final int FLAG_METRIC = 1;
+    /** Any more than this and the phone is sending something other than a forecast. */
+    public static final int MAX_DAYS = 31;
+
+    /** Increases every time the phone publishes a new forecast. */
+    public final long version;
+    public final int firstJulianDay;
+    public final boolean isMetric;
+
+    private final int[] mWeatherIds;
+    private final int[] mHighTenths;
+    private final int[] mLowTenths;
+
+    /**
+     * @param highs daily highs in degrees Celsius, one per weather id
+     * @param lows daily lows in degrees Celsius, one per weather id
+     */
+    public WeatherForecast(long version, int firstJulianDay, boolean isMetric, int[] weatherIds,
+                           double[] highs, double[] lows) {
+        if (weatherIds.length > MAX_DAYS
+                || highs.length != weatherIds.length || lows.length != weatherIds.length) {
+            throw new IllegalArgumentException("Bad forecast: " + weatherIds.length + " days");
+        }
+        this.version = version;
+        this.firstJulianDay = firstJulianDay;
+        this.isMetric = isMetric;
+        mWeatherIds = weatherIds.clone();
+        mHighTenths = new int[highs.length];
+        mLowTenths = new int[lows.length];
+        for (int day = 0; day < weatherIds.length; day++) {
+            mHighTenths[day] = (int) Math.round(highs[day] * 10);
+            mLowTenths[day] = (int) Math.round(lows[day] * 10);
+        }
+    }
+
+    private WeatherForecast(long version, int firstJulianDay, boolean isMetric, int[] weatherIds,
+                            int[] highTenths, int[] lowTenths) {
+        this.version = version;
+        this.firstJulianDay = firstJulianDay;
+        this.isMetric = isMetric;
+        mWeatherIds = weatherIds;
+        mHighTenths = highTenths;
+        mLowTenths = lowTenths;
+    }
+
+    /**
+     * @return the same forecast under another version
+     */
+    public WeatherForecast withVersion(long version) {
+        return new WeatherForecast(version, firstJulianDay, isMetric, mWeatherIds, mHighTenths,
+                mLowTenths);
+    }
+
+    public int getDayCount() {
+        return mWeatherIds.length;
+    }
+
+    /**
+     * @return the index of the day, or -1 if the forecast doesn't cover it
+     */
+    public int getDayIndex(int julianDay) {
+        int day = julianDay - firstJulianDay;
+        return day >= 0 && day < mWeatherIds.length ? day : -1;
+    }
+
+    public int getWeatherId(int day) {
+        return mWeatherIds[day];
+    }
+
+    /**
+     * @return the high in degrees Celsius
+     */
+    public double getHigh(int day) {
+        return mHighTenths[day] / 10.0;
+    }
+
+    /**
+     * @return the low in degrees Celsius
+     */
+    public double getLow(int day) {
+        return mLowTenths[day] / 10.0;
+    }
+
+    /**
+     * @return a hash of everything the watch shows, which leaves out {@link #version}
+     */
+    public int contentHashCode() {
+        int result = firstJulianDay;
+        result = 31 * result + (isMetric ? 1 : 0);
+        result = 31 * result + Arrays.hashCode(mWeatherIds);
+        result = 31 * result + Arrays.hashCode(mHighTenths);
+        result = 31 * result + Arrays.hashCode(mLowTenths);
+        return result;
+    }
+
+    public byte[] toByteArray() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + 6 * mWeatherIds.length);
+        out.write(SCHEMA_VERSION);
+        writeVarLong(out, version);
+        writeVarLong(out, firstJulianDay);
+        out.write(isMetric ? FLAG_METRIC : 0);
+        out.write(mWeatherIds.length);
+
+        int previous = 0;
+        for (int weatherId : mWeatherIds) {
+            writeVarLong(out, zigzag(weatherId - previous));
+            previous = weatherId;
+        }
+        previous = 0;
+        for (int high : mHighTenths) {
+            writeVarLong(out, zigzag(high - previous));
+            previous = high;
+        }
+        for (int day = 0; day < mLowTenths.length; day++) {
+            writeVarLong(out, zigzag(mLowTenths[day] - mHighTenths[day]));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the forecast, or null if the bytes aren't a forecast in a schema this build knows
+     */
+    public static WeatherForecast fromByteArray(byte[] bytes) {
+        Reader in = new Reader(bytes);
+        if (in.readByte() != SCHEMA_VERSION) {
+            return null;
+        }
+        long version = in.readVarLong();
+        int firstJulianDay = (int) in.readVarLong();
+        boolean isMetric = (in.readByte() & FLAG_METRIC) != 0;
+        int dayCount = in.readByte();
+        if (dayCount > MAX_DAYS) {
+            return null;
+        }
+
+        int[] weatherIds = new int[dayCount];
+        int[] highTenths = new int[dayCount];
+        int[] lowTenths = new int[dayCount];
+        int previous = 0;
+        for (int day = 0; day < dayCount; day++) {
+            previous += unzigzag(in.readVarLong());
+            weatherIds[day] = previous;
+        }
+        previous = 0;
+        for (int day = 0; day < dayCount; day++) {
+            previous += unzigzag(in.readVarLong());
+            highTenths[day] = previous;
+        }
+        for (int day = 0; day < dayCount; day++) {
+            lowTenths[day] = highTenths[day] + unzigzag(in.readVarLong());
+        }
+        if (in.isTruncated()) {
+            return null;
+        }
+        return new WeatherForecast(version, firstJulianDay, isMetric, weatherIds, highTenths,
+                lowTenths);
+    }
+
+    // Small differences, positive or negative, become small unsigned values.
+    private static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xffffffffL;
+    }
+
+    private static int unzigzag(long value) {
+        int bits = (int) value;
+        return (bits >>> 1) ^ -(bits & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Reads past the end as zeros and remembers that it did, so a truncated asset is rejected
+     * once at the end instead of at every read.
+     */
+    private static final class Reader {
+        private final byte[] mBytes;
+        private int mPosition;
+        private boolean mTruncated;
+
+        Reader(byte[] bytes) {
+            mBytes = bytes;
+        }
+
+        int readByte() {
+            if (mPosition >= mBytes.length) {
+                mTruncated = true;
+                return 0;
+            }
+            return mBytes[mPosition++] & 0xff;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            mTruncated = true;
+            return 0;
+        }
+
+        boolean isTruncated() {
+            return mTruncated;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.example.android.sunshine.shared.WeatherForecast;
+
+import java.util.Arrays;
+
+/**
+ * Renders the face offscreen, a frame per simulated second in interactive and a frame per
+ * simulated minute in ambient, on a round and a square screen. Each run crosses midnight and the
+ * forecast going stale, so the static layer is redrawn along the way as it is on a watch.
+ *
+ * Draw times (p50 and p99), allocations and GCs are logged under this class's tag, and the test
+ * fails if a frame gets slow at the tail or the steady state starts allocating.
+ */
+public class TestRenderBenchmark extends AndroidTestCase {
+    private static final String LOG_TAG = TestRenderBenchmark.class.getSimpleName();
+
+    private static final int ROUND_SIZE = 320;
+    private static final int SQUARE_SIZE = 280;
+
+    // Four hours of interactive seconds, and a day and a half of ambient minutes
+    private static final int INTERACTIVE_FRAMES = 4 * 60 * 60;
+    private static final int AMBIENT_FRAMES = 36 * 60;
+    // Frames drawn before measuring, so the layer and atlases are already built
+    private static final int WARM_UP_FRAMES = 60;
+
+    // Loose enough for an emulator; a frame has to fit a 60 Hz vsync with room to spare
+    private static final long MAX_P99_NANOS = 8 * 1000 * 1000;
+    // The day rolling over and the weather dimming allocate a little; a frame never should
+    private static final int MAX_ALLOCS_PER_1000_FRAMES = 20;
+
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private long mStart;
+    private WeatherForecast mForecast;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        FrameStats.acquireAllocCounting();
+        // 22:00 local, two hours before midnight
+        Time time = new Time();
+        time.set(0, 0, 22, 1, 5, 2016);
+        mStart = time.toMillis(false);
+        int julianDay = Time.getJulianDay(mStart, time.gmtoff);
+        mForecast = new WeatherForecast(1, julianDay, true,
+                new int[]{800, 500, 211},
+                new double[]{21.0, 18.5, 16.0},
+                new double[]{10.0, 9.5, 8.0});
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FrameStats.releaseAllocCounting();
+        if (mBitmap != null) {
+            mBitmap.recycle();
+            mBitmap = null;
+        }
+        super.tearDown();
+    }
+
+    public void testInteractiveRound() {
+        runInteractive("Interactive round", true, ROUND_SIZE);
+    }
+
+    public void testInteractiveSquare() {
+        runInteractive("Interactive square", false, SQUARE_SIZE);
+    }
+
+    public void testAmbientRound() {
+        runAmbient("Ambient round", true, ROUND_SIZE);
+    }
+
+    public void testAmbientSquare() {
+        runAmbient("Ambient square", false, SQUARE_SIZE);
+    }
+
+    private Rect createCanvas(int size) {
+        mBitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+        return new Rect(0, 0, size, size);
+    }
+
+    private void runInteractive(String name, boolean isRound, int size) {
+        Rect bounds = createCanvas(size);
+        InteractiveRenderer renderer = new InteractiveRenderer(mContext,
+                Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL),
+                Typeface.create(Typeface.SANS_SERIF, Typeface.BOLD));
+        renderer.applyInsets(isRound);
+        Time time = new Time();
+        time.set(mStart);
+        // Stale halfway through the run
+        renderer.setForecast(mForecast, mStart + INTERACTIVE_FRAMES * 1000L / 2, time);
+
+        long[] nanos = new long[INTERACTIVE_FRAMES];
+        Counts counts = new Counts();
+        for (int frame = -WARM_UP_FRAMES; frame < INTERACTIVE_FRAMES; frame++) {
+            if (frame == 0) {
+                counts.start();
+            }
+            time.set(mStart + frame * 1000L);
+            counts.beginFrame();
+            renderer.draw(mCanvas, bounds, time);
+            if (frame >= 0) {
+                nanos[frame] = counts.endFrame();
+            }
+        }
+        counts.stop();
+        renderer.release();
+
+        report(name, nanos, counts);
+    }
+
+    private void runAmbient(String name, boolean isRound, int size) {
+        Rect bounds = createCanvas(size);
+        Resources resources = mContext.getResources();
+        AmbientRenderer renderer = new AmbientRenderer(
+                Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL),
+                resources.getDimensionPixelSize(R.dimen.digital_burn_in_shift));
+        renderer.setTextSize(resources.getDimension(isRound
+                ? R.dimen.digital_time_text_size_round : R.dimen.digital_time_text_size));
+        // Burn-in protection on, so the shifting path is measured too
+        renderer.setProperties(false, true);
+        float baseline = resources.getDimension(R.dimen.digital_y_offset);
+        Time time = new Time();
+
+        long[] nanos = new long[AMBIENT_FRAMES];
+        Counts counts = new Counts();
+        for (int frame = -WARM_UP_FRAMES; frame < AMBIENT_FRAMES; frame++) {
+            if (frame == 0) {
+                counts.start();
+            }
+            time.set(mStart + frame * 60 * 1000L);
+            counts.beginFrame();
+            renderer.draw(mCanvas, bounds, time.hour, time.minute, baseline);
+            if (frame >= 0) {
+                nanos[frame] = counts.endFrame();
+            }
+        }
+        counts.stop();
+        renderer.releaseAtlas();
+
+        report(name, nanos, counts);
+    }
+
+    private void report(String name, long[] nanos, Counts counts) {
+        int frames = nanos.length;
+        Arrays.sort(nanos);
+        long p50 = nanos[(frames - 1) / 2];
+        long p99 = nanos[(int) ((frames - 1) * 0.99)];
+        Log.i(LOG_TAG, name + ": p50 " + p50 / 1000 + "us, p99 " + p99 / 1000 + "us, "
+                + counts.allocs + " allocs, " + counts.gcs + " GCs over " + frames + " frames");
+
+        assertTrue(name + " p99 " + p99 / 1000 + "us", p99 < MAX_P99_NANOS);
+        assertTrue(name + " allocated " + counts.allocs + " objects in " + frames + " frames",
+                counts.allocs * 1000L <= MAX_ALLOCS_PER_1000_FRAMES * (long) frames);
+    }
+
+    /**
+     * Objects allocated while drawing measured frames, and GCs run by the whole runtime between
+     * start and stop. GCs are only counted from Marshmallow on, and are -1 before it.
+     */
+    private static final class Counts {
+        int allocs;
+        int gcs = -1;
+
+        private long mFrameStartNanos;
+        private int mFrameStartAllocs;
+
+        void start() {
+            allocs = 0;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                gcs = getGcCount();
+            }
+        }
+
+        void stop() {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                gcs = getGcCount() - gcs;
+            }
+        }
+
+        @SuppressWarnings("deprecation")
+        void beginFrame() {
+            mFrameStartAllocs = Debug.getThreadAllocCount();
+            mFrameStartNanos = System.nanoTime();
+        }
+
+        /**
+         * @return the frame's draw time in nanoseconds
+         */
+        @SuppressWarnings("deprecation")
+        long endFrame() {
+            long nanos = System.nanoTime() - mFrameStartNanos;
+            allocs += Debug.getThreadAllocCount() - mFrameStartAllocs;
+            return nanos;
+        }
+
+        private static int getGcCount() {
+            String count = Debug.getRuntimeStat("art.gc.gc-count");
+            return count != null ? Integer.parseInt(count) : 0;
+        }
+    }
+}
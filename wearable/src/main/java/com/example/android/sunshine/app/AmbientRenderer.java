@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Draws the ambient face: black, with H:MM and nothing else.
+ *
+ * The digits and the colon are rendered once into a glyph atlas, so a frame is a clear and up to
+ * five bitmap copies, with no text layout. On screens that need burn-in protection the time moves
+ * by a few pixels every minute, so no pixel stays lit for long.
+ */
+final class AmbientRenderer {
+    private static final String LOG_TAG = AmbientRenderer.class.getSimpleName();
+
+    private static final String GLYPHS = "0123456789:";
+    private static final int COLON = 10;
+    // The burn-in shift walks a 5 x 5 grid of offsets, one step a minute
+    private static final int SHIFT_STEPS = 5;
+    // Draw times are logged once per this many frames, about every half hour in ambient
+    private static final int STATS_FRAMES = 30;
+
+    private final Paint mGlyphPaint = new Paint();
+    private final Rect mSrc = new Rect();
+    private final Rect mDst = new Rect();
+    private final int[] mGlyphLefts = new int[GLYPHS.length() + 1];
+    private final char[] mChars = new char[5];
+    private final int mShiftStep;
+
+    private Bitmap mAtlas;
+    private int mAscent;
+    private float mTextSize;
+    private boolean mLowBit;
+    private boolean mBurnInProtection;
+
+    private int mFrames;
+    private long mDrawNanos;
+
+    /**
+     * @param shiftStep pixels per burn-in step
+     */
+    AmbientRenderer(Typeface typeface, int shiftStep) {
+        mGlyphPaint.setTypeface(typeface);
+        mGlyphPaint.setColor(Color.WHITE);
+        mShiftStep = shiftStep;
+    }
+
+    void setTextSize(float textSize) {
+        if (textSize != mTextSize) {
+            mTextSize = textSize;
+            releaseAtlas();
+        }
+    }
+
+    /**
+     * @param lowBit whether the screen shows fewer colors in ambient, so the glyphs shouldn't be
+     *               anti-aliased
+     */
+    void setProperties(boolean lowBit, boolean burnInProtection) {
+        if (lowBit != mLowBit) {
+            mLowBit = lowBit;
+            releaseAtlas();
+        }
+        mBurnInProtection = burnInProtection;
+    }
+
+    void releaseAtlas() {
+        if (mAtlas != null) {
+            mAtlas.recycle();
+            mAtlas = null;
+        }
+    }
+
+    private void buildAtlas() {
+        mGlyphPaint.setTextSize(mTextSize);
+        mGlyphPaint.setAntiAlias(!mLowBit);
+        Paint.FontMetricsInt metrics = mGlyphPaint.getFontMetricsInt();
+        mAscent = metrics.ascent;
+
+        float[] widths = new float[GLYPHS.length()];
+        mGlyphPaint.getTextWidths(GLYPHS, widths);
+        mGlyphLefts[0] = 0;
+        for (int i = 0; i < widths.length; i++) {
+            mGlyphLefts[i + 1] = mGlyphLefts[i] + (int) Math.ceil(widths[i]);
+        }
+
+        mAtlas = Bitmap.createBitmap(Math.max(1, mGlyphLefts[widths.length]),
+                Math.max(1, metrics.descent - metrics.ascent), Bitmap.Config.ALPHA_8);
+        Canvas canvas = new Canvas(mAtlas);
+        for (int i = 0; i < widths.length; i++) {
+            canvas.drawText(GLYPHS, i, i + 1, mGlyphLefts[i], -mAscent, mGlyphPaint);
+        }
+    }
+
+    /**
+     * @param baseline the y of the time's baseline before any burn-in shift
+     */
+    void draw(Canvas canvas, Rect bounds, int hour, int minute, float baseline) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        if (mAtlas == null) {
+            buildAtlas();
+        }
+        canvas.drawColor(Color.BLACK);
+
+        int length = 0;
+        if (hour >= 10) {
+            mChars[length++] = (char) ('0' + hour / 10);
+        }
+        mChars[length++] = (char) ('0' + hour % 10);
+        mChars[length++] = ':';
+        mChars[length++] = (char) ('0' + minute / 10);
+        mChars[length++] = (char) ('0' + minute % 10);
+
+        int width = 0;
+        for (int i = 0; i < length; i++) {
+            int glyph = glyphIndex(mChars[i]);
+            width += mGlyphLefts[glyph + 1] - mGlyphLefts[glyph];
+        }
+        int x = bounds.centerX() - width / 2;
+        int top = Math.round(baseline) + mAscent;
+        if (mBurnInProtection) {
+            x += (minute % SHIFT_STEPS - SHIFT_STEPS / 2) * mShiftStep;
+            top += (minute / SHIFT_STEPS % SHIFT_STEPS - SHIFT_STEPS / 2) * mShiftStep;
+        }
+
+        // The atlas is an alpha mask; the paint supplies the color, and no filtering is needed
+        // since glyphs are copied at their own size.
+        for (int i = 0; i < length; i++) {
+            int glyph = glyphIndex(mChars[i]);
+            int glyphWidth = mGlyphLefts[glyph + 1] - mGlyphLefts[glyph];
+            mSrc.set(mGlyphLefts[glyph], 0, mGlyphLefts[glyph + 1], mAtlas.getHeight());
+            mDst.set(x, top, x + glyphWidth, top + mAtlas.getHeight());
+            canvas.drawBitmap(mAtlas, mSrc, mDst, mGlyphPaint);
+            x += glyphWidth;
+        }
+
+        mDrawNanos += SystemClock.elapsedRealtimeNanos() - start;
+        if (++mFrames == STATS_FRAMES) {
+            if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
+                Log.d(LOG_TAG, "Ambient draw: " + (mDrawNanos / mFrames / 1000) + "us average over "
+                        + mFrames + " frames");
+            }
+            mFrames = 0;
+            mDrawNanos = 0;
+        }
+    }
+
+    private static int glyphIndex(char c) {
+        return c == ':' ? COLON : c - '0';
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.graphics.Paint;
+
+/**
+ * "H:MM" or "H:MM:SS" written into a reused buffer, with its width summed from per-glyph widths
+ * that are only measured when the text size changes. Setting and measuring the time allocates
+ * nothing.
+ */
+final class ClockText {
+    private static final String GLYPHS = "0123456789:";
+    private static final int COLON = 10;
+
+    final char[] chars = new char[8];
+    int length;
+
+    private final float[] mGlyphWidths = new float[GLYPHS.length()];
+    private float mGlyphTextSize = -1;
+
+    void set(int hour, int minute, int second, boolean showSeconds) {
+        int i = 0;
+        if (hour >= 10) {
+            chars[i++] = (char) ('0' + hour / 10);
+        }
+        chars[i++] = (char) ('0' + hour % 10);
+        chars[i++] = ':';
+        chars[i++] = (char) ('0' + minute / 10);
+        chars[i++] = (char) ('0' + minute % 10);
+        if (showSeconds) {
+            chars[i++] = ':';
+            chars[i++] = (char) ('0' + second / 10);
+            chars[i++] = (char) ('0' + second % 10);
+        }
+        length = i;
+    }
+
+    float getWidth(Paint paint) {
+        if (paint.getTextSize() != mGlyphTextSize) {
+            paint.getTextWidths(GLYPHS, mGlyphWidths);
+            mGlyphTextSize = paint.getTextSize();
+        }
+        float width = 0;
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            width += mGlyphWidths[c == ':' ? COLON : c - '0'];
+        }
+        return width;
+    }
+}
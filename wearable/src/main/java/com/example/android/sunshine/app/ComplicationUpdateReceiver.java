@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Has the weather complication updated when the day it shows is over, when the forecast goes
+ * stale, and whenever the date, clock or time zone changes. The face rolls over by itself on
+ * every frame; the complication only changes when it's asked to.
+ */
+public class ComplicationUpdateReceiver extends BroadcastReceiver {
+
+    static final String ACTION_COMPLICATION_UPDATE =
+            "com.example.android.sunshine.app.ACTION_COMPLICATION_UPDATE";
+
+    /**
+     * Replaces any update already scheduled.
+     */
+    static void schedule(Context context, long at) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        Intent intent = new Intent(ACTION_COMPLICATION_UPDATE)
+                .setClass(context, ComplicationUpdateReceiver.class);
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT);
+        // Nobody sees the complication while the screen is off, so don't wake the watch for it
+        alarmManager.set(AlarmManager.RTC, at, pendingIntent);
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        // The update schedules the next one
+        WeatherComplicationProviderService.requestUpdate(context);
+    }
+}
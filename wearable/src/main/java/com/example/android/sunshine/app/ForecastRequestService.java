@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.app.IntentService;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.example.android.sunshine.shared.WatchProtocol;
+import com.example.android.sunshine.shared.WeatherForecast;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.CapabilityApi;
+import com.google.android.gms.wearable.MessageApi;
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the phone a {@link WatchProtocol} request carrying the stored forecast, so it can answer
+ * with nothing if the watch is up to date. The answer comes back to
+ * {@link WeatherListenerService}.
+ *
+ * Connecting happens here, on the service's worker thread, and only when a request is actually
+ * made; the faces never hold a connection. If no phone is reachable, the watch starts fetching
+ * the forecast itself with {@link StandaloneFetchService}.
+ */
+public class ForecastRequestService extends IntentService {
+    private static final String LOG_TAG = ForecastRequestService.class.getSimpleName();
+
+    private static final long CONNECT_TIMEOUT_SECONDS = 10;
+    private static final long REQUEST_TIMEOUT_SECONDS = 10;
+
+    public static void start(Context context) {
+        context.startService(new Intent(context, ForecastRequestService.class));
+    }
+
+    public ForecastRequestService() {
+        super(LOG_TAG);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        GoogleApiClient googleApiClient = new GoogleApiClient.Builder(this)
+                .addApi(Wearable.API)
+                .build();
+        ConnectionResult connection =
+                googleApiClient.blockingConnect(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!connection.isSuccess()) {
+            Log.w(LOG_TAG, "Couldn't connect to the wearable API: " + connection);
+            return;
+        }
+        try {
+            CapabilityApi.GetCapabilityResult capability = Wearable.CapabilityApi
+                    .getCapability(googleApiClient, WatchProtocol.CAPABILITY_WEATHER,
+                            CapabilityApi.FILTER_REACHABLE)
+                    .await(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            String nodeId = capability.getStatus().isSuccess()
+                    ? pickNode(capability.getCapability().getNodes()) : null;
+            if (nodeId == null) {
+                Log.d(LOG_TAG, "No phone to ask for the forecast");
+                StandaloneFetchService.schedule(this);
+                return;
+            }
+
+            ForecastStore.Entry stored = ForecastStore.getInstance(this).read();
+            WeatherForecast current = stored != null ? stored.forecast : null;
+            MessageApi.SendMessageResult result = Wearable.MessageApi
+                    .sendMessage(googleApiClient, nodeId, WatchProtocol.REQUEST_PATH,
+                            WatchProtocol.createRequest(current))
+                    .await(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (!result.getStatus().isSuccess()) {
+                Log.w(LOG_TAG, "Failed to ask the phone: " + result.getStatus());
+            }
+        } finally {
+            googleApiClient.disconnect();
+        }
+    }
+
+    /**
+     * @return a node directly connected to the watch if there is one, any node otherwise
+     */
+    private static String pickNode(Iterable<Node> nodes) {
+        String nodeId = null;
+        for (Node node : nodes) {
+            if (node.isNearby()) {
+                return node.getId();
+            }
+            nodeId = node.getId();
+        }
+        return nodeId;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.example.android.sunshine.shared.WeatherForecast;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The last forecast the watch received, and when, kept in a small file so a new engine has
+ * weather to show before it has even connected to the phone.
+ *
+ * The file is the forecast's own encoding behind a short header. It is written with
+ * {@link AtomicFile}, so a crash mid-write leaves the previous forecast rather than a torn one.
+ * The latest entry is also kept in memory, so only the first engine in a process reads the disk.
+ *
+ * {@link WeatherListenerService} writes to the store whatever the phone sends, whether or not a
+ * face is visible, and engines are told about it through {@link Listener}; they never talk to the
+ * data layer themselves. {@link WeatherComplicationProviderService} is asked to update when the
+ * content changes.
+ */
+final class ForecastStore {
+    private static final String LOG_TAG = ForecastStore.class.getSimpleName();
+
+    private static final String FILE_NAME = "forecast.bin";
+    private static final int FILE_VERSION = 1;
+
+    // The phone syncs every three hours; two missed syncs make the forecast stale
+    static final long STALE_MILLIS = TimeUnit.HOURS.toMillis(6);
+    // A stale face asks the phone at most this often, however often it becomes visible
+    private static final long REQUEST_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private static ForecastStore sInstance;
+
+    private final Context mContext;
+    private final AtomicFile mFile;
+    private volatile Entry mEntry;
+    private boolean mLoaded;
+    private long mLastRequest;
+
+    // Only touched on the main thread, where listeners are added and called
+    private final ArrayList<Listener> mListeners = new ArrayList<Listener>();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    interface Listener {
+        /**
+         * Called on the main thread when a forecast arrives, or the one stored is confirmed as
+         * the phone's latest.
+         */
+        void onForecastChanged(Entry entry);
+    }
+
+    static synchronized ForecastStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ForecastStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ForecastStore(Context context) {
+        mContext = context;
+        mFile = new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    /**
+     * Must be called on the main thread.
+     */
+    void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    /**
+     * Must be called on the main thread.
+     */
+    void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * @return the entry already in memory, without touching the disk. Null until {@link #read()}
+     * or {@link #write(WeatherForecast, long)} has run in this process.
+     */
+    Entry getCached() {
+        return mEntry;
+    }
+
+    /**
+     * Reads the file the first time it's called. Blocks on disk; call it off the main thread.
+     *
+     * @return the last forecast received, null if there is none or it can't be read
+     */
+    synchronized Entry read() {
+        if (mLoaded) {
+            return mEntry;
+        }
+        mLoaded = true;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(mFile.openRead());
+            if (in.readByte() != FILE_VERSION) {
+                return null;
+            }
+            long receivedMillis = in.readLong();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            WeatherForecast forecast = WeatherForecast.fromByteArray(bytes);
+            if (forecast != null) {
+                mEntry = new Entry(forecast, receivedMillis);
+            }
+        } catch (FileNotFoundException e) {
+            // Nothing received yet
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Stored forecast unreadable", e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Already read
+                }
+            }
+        }
+        return mEntry;
+    }
+
+    /**
+     * Keeps a newly received forecast, in memory right away and on disk before returning. Blocks
+     * on disk; call it off the main thread.
+     */
+    synchronized Entry write(WeatherForecast forecast, long receivedMillis) {
+        Entry previous = read();
+        final Entry entry = new Entry(forecast, receivedMillis);
+        mEntry = entry;
+        mLoaded = true;
+        if (previous == null
+                || previous.forecast.contentHashCode() != forecast.contentHashCode()) {
+            // Only what the complications show; a new receive time doesn't change that
+            WeatherComplicationProviderService.requestUpdate(mContext);
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = mListeners.size() - 1; i >= 0; i--) {
+                    mListeners.get(i).onForecastChanged(entry);
+                }
+            }
+        });
+
+        byte[] bytes = forecast.toByteArray();
+        FileOutputStream stream = null;
+        try {
+            stream = mFile.startWrite();
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeByte(FILE_VERSION);
+            out.writeLong(receivedMillis);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.flush();
+            mFile.finishWrite(stream);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Failed storing the forecast", e);
+            if (stream != null) {
+                mFile.failWrite(stream);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Keeps a forecast from a data item, unless it's the one already stored. The data layer hands
+     * out the same item again, and that says nothing about how old it is.
+     */
+    synchronized Entry receive(WeatherForecast forecast, long receivedMillis) {
+        Entry stored = read();
+        if (stored != null && stored.forecast.version == forecast.version
+                && stored.forecast.contentHashCode() == forecast.contentHashCode()) {
+            return stored;
+        }
+        return write(forecast, receivedMillis);
+    }
+
+    /**
+     * Records that the phone has nothing newer than the stored forecast, which makes it fresh.
+     */
+    synchronized Entry confirm(long receivedMillis) {
+        Entry stored = read();
+        return stored != null ? write(stored.forecast, receivedMillis) : null;
+    }
+
+    /**
+     * @return whether the caller may ask the phone for a forecast now; true at most once per
+     * {@link #REQUEST_INTERVAL_MILLIS} across every engine in the process
+     */
+    synchronized boolean claimRequest(long now) {
+        if (mLastRequest != 0 && now - mLastRequest < REQUEST_INTERVAL_MILLIS) {
+            return false;
+        }
+        mLastRequest = now;
+        return true;
+    }
+
+    static final class Entry {
+        final WeatherForecast forecast;
+        final long receivedMillis;
+
+        Entry(WeatherForecast forecast, long receivedMillis) {
+            this.forecast = forecast;
+            this.receivedMillis = receivedMillis;
+        }
+
+        long getStaleAt() {
+            return receivedMillis + STALE_MILLIS;
+        }
+
+        boolean isStale(long now) {
+            return now >= getStaleAt();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Debug;
+import android.os.SystemClock;
+
+/**
+ * A debug overlay with the last frame's draw time, the objects it allocated and how many frames
+ * have been skipped since the face became visible.
+ *
+ * A frame counts as skipped when it should have been drawn but wasn't: once a second in
+ * interactive, once a minute in ambient. Frames arriving late by more than half an interval count
+ * the missed ones. The overlay itself is drawn after the measurement, so it doesn't show in its
+ * own numbers.
+ *
+ * The engine only creates one when this class's log tag is enabled for debug, so a normal face
+ * pays nothing: {@code adb shell setprop log.tag.FrameStats DEBUG}, then pick the face again.
+ */
+final class FrameStats {
+    static final String LOG_TAG = FrameStats.class.getSimpleName();
+
+    private static final long INTERACTIVE_INTERVAL_MS = 1000;
+    private static final long AMBIENT_INTERVAL_MS = 60 * 1000;
+
+    // Allocation counting is on for the whole process while anything holds a reference
+    private static int sAllocCountingRefs;
+
+    private final Paint mPaint = new Paint();
+    private final StringBuilder mText = new StringBuilder(48);
+    private final float mLineHeight;
+
+    private long mFrameStartNanos;
+    private int mFrameStartAllocs;
+    // The previous frame, for skip counting; 0 after a reset
+    private long mLastFrameMillis;
+    private long mLastIntervalMs;
+
+    private long mDrawNanos;
+    private int mAllocs;
+    private int mSkipped;
+    private boolean mReleased;
+
+    /**
+     * @param textSize of the overlay, in pixels
+     */
+    FrameStats(float textSize) {
+        mPaint.setColor(Color.WHITE);
+        mPaint.setTextSize(textSize);
+        mPaint.setTextAlign(Paint.Align.CENTER);
+        mLineHeight = textSize * 1.2f;
+        acquireAllocCounting();
+    }
+
+    void release() {
+        if (!mReleased) {
+            mReleased = true;
+            releaseAllocCounting();
+        }
+    }
+
+    /**
+     * Turns on allocation counting, which thread allocation counts need. Counting is process-wide,
+     * so it stays on until every acquire has been released: one engine going away, like the
+     * picker's preview, mustn't stop it for the one still on screen.
+     */
+    @SuppressWarnings("deprecation")
+    static synchronized void acquireAllocCounting() {
+        if (sAllocCountingRefs++ == 0) {
+            Debug.startAllocCounting();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    static synchronized void releaseAllocCounting() {
+        if (--sAllocCountingRefs == 0) {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    /**
+     * Forgets the previous frame, so the time the face was hidden isn't counted as skipped frames.
+     */
+    void reset() {
+        mLastFrameMillis = 0;
+        mSkipped = 0;
+    }
+
+    @SuppressWarnings("deprecation")
+    void beginFrame(boolean ambient) {
+        long now = SystemClock.elapsedRealtime();
+        long interval = ambient ? AMBIENT_INTERVAL_MS : INTERACTIVE_INTERVAL_MS;
+        // Switching modes changes the cadence; the gap across the switch isn't a skip
+        if (mLastFrameMillis != 0 && interval == mLastIntervalMs) {
+            long gap = now - mLastFrameMillis;
+            if (gap > interval + interval / 2) {
+                mSkipped += (int) ((gap + interval / 2) / interval) - 1;
+            }
+        }
+        mLastFrameMillis = now;
+        mLastIntervalMs = interval;
+
+        mFrameStartAllocs = Debug.getThreadAllocCount();
+        mFrameStartNanos = SystemClock.elapsedRealtimeNanos();
+    }
+
+    @SuppressWarnings("deprecation")
+    void endFrame() {
+        mDrawNanos = SystemClock.elapsedRealtimeNanos() - mFrameStartNanos;
+        mAllocs = Debug.getThreadAllocCount() - mFrameStartAllocs;
+    }
+
+    /**
+     * Draws the numbers of the last frame along the bottom of the face.
+     */
+    void draw(Canvas canvas, Rect bounds, boolean ambient) {
+        // Low-bit ambient screens can't show anti-aliased edges
+        mPaint.setAntiAlias(!ambient);
+        float y = bounds.bottom - 2 * mLineHeight;
+
+        mText.setLength(0);
+        mText.append(mDrawNanos / 1000).append("us ").append(mAllocs).append(" allocs");
+        canvas.drawText(mText, 0, mText.length(), bounds.centerX(), y, mPaint);
+
+        mText.setLength(0);
+        mText.append(mSkipped).append(" skipped");
+        canvas.drawText(mText, 0, mText.length(), bounds.centerX(), y + mLineHeight, mPaint);
+    }
+}
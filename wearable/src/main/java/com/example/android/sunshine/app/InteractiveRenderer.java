@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.example.android.sunshine.shared.WeatherForecast;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Draws the interactive face: H:MM:SS over the date, a separator and the day's weather.
+ *
+ * Everything but the time is composited into a static layer, which is redrawn only when the day,
+ * the forecast, its staleness or the insets change, and blitted under the time on every frame.
+ * Everything drawn is prepared ahead of the frame, so {@link #draw} allocates nothing. It doesn't
+ * depend on the engine, so it can also be driven offscreen.
+ */
+final class InteractiveRenderer {
+    private static final String LOG_TAG = InteractiveRenderer.class.getSimpleName();
+
+    /**
+     * Alpha of the weather once the forecast is stale, so it reads as a last-known value.
+     */
+    private static final int STALE_WEATHER_ALPHA = 0x66;
+
+    private final Context mContext;
+
+    private final Paint mBackgroundPaint;
+    private final Paint mTextPaintTime;
+    private final Paint mTextPaintDate;
+    private final Paint mTextPaintHighTemp;
+    private final Paint mTextPaintLowTemp;
+
+    // The condition shown, as an OpenWeatherMap code; -1 when there's no forecast for today
+    private int mWeatherId = -1;
+    private final WeatherIconAtlas mWeatherIcons;
+    private final Paint mWeatherIconPaint = new Paint();
+
+    private final ClockText mClockText = new ClockText();
+    private final MeasuredText mDateText = new MeasuredText();
+    private final MeasuredText mHighTemp = new MeasuredText();
+    private final MeasuredText mLowTemp = new MeasuredText();
+    private final SimpleDateFormat mDateFormat = new SimpleDateFormat("EEE, MMM dd yyyy", Locale.US);
+    private int mDateJulianDay;
+
+    private Bitmap mStaticLayer;
+    private final Canvas mStaticLayerCanvas = new Canvas();
+    private boolean mStaticLayerDirty = true;
+
+    // The latest forecast, and the day of it currently shown. It's stale from mForecastStaleAt
+    // on, which is 0 while there's no forecast at all.
+    private WeatherForecast mForecast;
+    private int mShownJulianDay;
+    private long mForecastStaleAt;
+    private boolean mForecastStale;
+
+    private final float mYOffsetTime;
+    private final float mYOffsetDate;
+    private final float mYOffsetWeather;
+
+    InteractiveRenderer(Context context, Typeface normalTypeface, Typeface boldTypeface) {
+        mContext = context;
+        Resources resources = context.getResources();
+
+        mYOffsetTime = resources.getDimension(R.dimen.digital_y_offset);
+        mYOffsetDate = resources.getDimension(R.dimen.digital_date_y_offset);
+        mYOffsetWeather = resources.getDimension(R.dimen.digital_weather_y_offset);
+
+        mBackgroundPaint = new Paint();
+        mBackgroundPaint.setColor(resources.getColor(R.color.background));
+
+        mTextPaintTime = createTextPaint(resources.getColor(R.color.digital_text), normalTypeface);
+        mTextPaintDate = createTextPaint(resources.getColor(R.color.digital_secondary_text),
+                normalTypeface);
+        mTextPaintHighTemp = createTextPaint(Color.WHITE, boldTypeface);
+        mTextPaintLowTemp = createTextPaint(resources.getColor(R.color.digital_secondary_text),
+                normalTypeface);
+
+        mWeatherIcons = new WeatherIconAtlas(resources);
+    }
+
+    private static Paint createTextPaint(int textColor, Typeface typeface) {
+        Paint paint = new Paint();
+        paint.setColor(textColor);
+        paint.setTypeface(typeface);
+        paint.setAntiAlias(true);
+        return paint;
+    }
+
+    /**
+     * Loads the sizes that have alternate values for round watches.
+     */
+    void applyInsets(boolean isRound) {
+        Resources resources = mContext.getResources();
+        float timeTextSize = resources.getDimension(isRound
+                ? R.dimen.digital_time_text_size_round : R.dimen.digital_time_text_size);
+        float dateTextSize = resources.getDimension(isRound
+                ? R.dimen.digital_date_text_size_round : R.dimen.digital_date_text_size);
+        float tempTextSize = resources.getDimension(isRound
+                ? R.dimen.digital_temp_text_size_round : R.dimen.digital_temp_text_size);
+
+        mTextPaintTime.setTextSize(timeTextSize);
+        mTextPaintDate.setTextSize(dateTextSize);
+        mTextPaintHighTemp.setTextSize(tempTextSize);
+        mTextPaintLowTemp.setTextSize(tempTextSize);
+        // The icon sits beside the high temperature and is a little taller than it
+        mWeatherIcons.setIconSize((int) tempTextSize + 10);
+        invalidateStaticLayer();
+    }
+
+    /**
+     * The date and the day of the forecast shown both depend on the zone; redo them on the
+     * next frame.
+     */
+    void onTimeZoneChanged() {
+        mDateFormat.setTimeZone(TimeZone.getDefault());
+        mShownJulianDay = 0;
+        mDateJulianDay = 0;
+    }
+
+    /**
+     * @param staleAt when the forecast becomes stale
+     * @param now the current time, to pick the day shown
+     */
+    void setForecast(WeatherForecast forecast, long staleAt, Time now) {
+        mForecast = forecast;
+        mForecastStaleAt = staleAt;
+        showDay(Time.getJulianDay(now.toMillis(false), now.gmtoff));
+    }
+
+    void release() {
+        if (mStaticLayer != null) {
+            mStaticLayer.recycle();
+            mStaticLayer = null;
+        }
+        mWeatherIcons.release();
+    }
+
+    /**
+     * Draws H:MM:SS over the static layer.
+     */
+    void draw(Canvas canvas, Rect bounds, Time time) {
+        long now = time.toMillis(false);
+        int julianDay = Time.getJulianDay(now, time.gmtoff);
+        if (julianDay != mShownJulianDay) {
+            // Past midnight: move on to the next day of the forecast we already have
+            showDay(julianDay);
+        }
+        if (julianDay != mDateJulianDay) {
+            mDateJulianDay = julianDay;
+            mDateText.setText(mDateFormat.format(now).toUpperCase(Locale.US));
+            invalidateStaticLayer();
+        }
+        boolean stale = now >= mForecastStaleAt;
+        if (stale != mForecastStale) {
+            mForecastStale = stale;
+            int alpha = stale ? STALE_WEATHER_ALPHA : 0xff;
+            mTextPaintHighTemp.setAlpha(alpha);
+            mTextPaintLowTemp.setAlpha(alpha);
+            mWeatherIconPaint.setAlpha(alpha);
+            invalidateStaticLayer();
+        }
+        mClockText.set(time.hour, time.minute, time.second, true);
+
+        canvas.drawBitmap(getStaticLayer(bounds), 0, 0, null);
+
+        float timeTextLen = mClockText.getWidth(mTextPaintTime);
+        canvas.drawText(mClockText.chars, 0, mClockText.length,
+                bounds.centerX() - timeTextLen / 2, mYOffsetTime, mTextPaintTime);
+    }
+
+    /**
+     * Has the static layer redrawn before the next frame. Call whenever anything in it changes.
+     */
+    private void invalidateStaticLayer() {
+        mStaticLayerDirty = true;
+    }
+
+    private Bitmap getStaticLayer(Rect bounds) {
+        if (mStaticLayer == null || mStaticLayer.getWidth() != bounds.width()
+                || mStaticLayer.getHeight() != bounds.height()) {
+            if (mStaticLayer != null) {
+                mStaticLayer.recycle();
+            }
+            mStaticLayer = Bitmap.createBitmap(bounds.width(), bounds.height(),
+                    Bitmap.Config.ARGB_8888);
+            mStaticLayerCanvas.setBitmap(mStaticLayer);
+            mStaticLayerDirty = true;
+        }
+        if (mStaticLayerDirty) {
+            drawStaticLayer(mStaticLayerCanvas, bounds);
+            mStaticLayerDirty = false;
+        }
+        return mStaticLayer;
+    }
+
+    private void drawStaticLayer(Canvas canvas, Rect bounds) {
+        canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
+
+        float xOffsetDate = mDateText.getWidth(mTextPaintDate) / 2;
+        canvas.drawText(mDateText.getText(), bounds.centerX() - xOffsetDate, mYOffsetDate,
+                mTextPaintDate);
+
+        if (mHighTemp.getText() != null && mLowTemp.getText() != null) {
+            canvas.drawLine(bounds.centerX() - 30, mYOffsetDate + 20, bounds.centerX() + 30, mYOffsetDate + 20, mTextPaintLowTemp);
+            float highTextLen = mHighTemp.getWidth(mTextPaintHighTemp);
+            int iconSize = mWeatherIcons.getIconSize();
+            float iconXOffset = bounds.centerX() - ((highTextLen / 2) + iconSize + 20);
+            mWeatherIcons.draw(canvas, mWeatherId, iconXOffset, mYOffsetWeather - iconSize + 5,
+                    mWeatherIconPaint);
+            float xOffset = bounds.centerX() - (highTextLen / 2);
+            canvas.drawText(mHighTemp.getText(), xOffset, mYOffsetWeather, mTextPaintHighTemp);
+            canvas.drawText(mLowTemp.getText(), bounds.centerX() + (highTextLen / 2) + 20, mYOffsetWeather, mTextPaintLowTemp);
+        }
+    }
+
+    /**
+     * Picks the icon and prepares the temperatures for the day, so drawing them is just drawing.
+     */
+    private void showDay(int julianDay) {
+        mShownJulianDay = julianDay;
+        invalidateStaticLayer();
+        int day = mForecast != null ? mForecast.getDayIndex(julianDay) : -1;
+        if (day == -1) {
+            // Nothing for this day; the phone will publish more when it next syncs
+            mWeatherId = -1;
+            mHighTemp.setText(null);
+            mLowTemp.setText(null);
+            return;
+        }
+
+        // The icon comes out of the atlas when the static layer is drawn
+        mWeatherId = mForecast.getWeatherId(day);
+        mHighTemp.setText(formatTemperature(mForecast.getHigh(day)));
+        mLowTemp.setText(formatTemperature(mForecast.getLow(day)));
+        if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
+            Log.d(LOG_TAG, "Showing " + mHighTemp.getText() + " / " + mLowTemp.getText()
+                    + " for day " + julianDay);
+        }
+    }
+
+    private String formatTemperature(double temperature) {
+        return SunshineWatchFaceUtil.formatTemperature(mContext, temperature, mForecast.isMetric);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.graphics.Paint;
+
+/**
+ * A string and its width, measured once per text size rather than on every frame.
+ */
+final class MeasuredText {
+    private String mText;
+    private float mTextSize = -1;
+    private float mWidth;
+
+    void setText(String text) {
+        if (text == null ? mText != null : !text.equals(mText)) {
+            mText = text;
+            mTextSize = -1;
+        }
+    }
+
+    String getText() {
+        return mText;
+    }
+
+    /**
+     * @return the width of the text in the paint, 0 if there's no text
+     */
+    float getWidth(Paint paint) {
+        float textSize = paint.getTextSize();
+        if (textSize != mTextSize) {
+            mWidth = mText != null ? paint.measureText(mText) : 0;
+            mTextSize = textSize;
+        }
+        return mWidth;
+    }
+}
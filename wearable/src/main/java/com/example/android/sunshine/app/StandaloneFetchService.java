@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.os.AsyncTask;
+import android.os.BatteryManager;
+import android.util.Log;
+
+import com.example.android.sunshine.shared.ForecastSource;
+import com.example.android.sunshine.shared.WatchProtocol;
+import com.example.android.sunshine.shared.WeatherForecast;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.CapabilityApi;
+import com.google.android.gms.wearable.Wearable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches the forecast from the watch itself while the phone can't be reached, so the face
+ * doesn't show the same stale weather for as long as the phone is away.
+ *
+ * It's a periodic job, scheduled when a request finds no phone and cancelled as soon as one is
+ * back, at which point the phone is asked for its forecast, which replaces the watch's own. Runs
+ * wait for a network, are spaced as far apart as the phone's own syncs, and are skipped while
+ * the battery is low. Requests go through {@link ForecastSource}, so a forecast the server hasn't
+ * changed costs a 304 rather than a download.
+ */
+public class StandaloneFetchService extends JobService {
+    private static final String LOG_TAG = StandaloneFetchService.class.getSimpleName();
+
+    private static final int JOB_ID = 1;
+    // As often as the phone syncs
+    private static final long INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(3);
+    private static final int LOW_BATTERY_PERCENT = 20;
+    private static final int FORECAST_DAYS = 14;
+    private static final long CONNECT_TIMEOUT_SECONDS = 10;
+    private static final String CACHE_FILE_NAME = "forecast_response";
+
+    // A forecast the watch fetched itself has no phone version
+    private static final long STANDALONE_VERSION = 0;
+
+    private static final String PREFS_NAME = "standalone_fetch";
+    private static final String KEY_LOCATION = "location";
+    private static final String KEY_LATITUDE = "latitude";
+    private static final String KEY_LONGITUDE = "longitude";
+
+    private FetchTask mTask;
+
+    /**
+     * Starts fetching periodically, unless it's disabled or already scheduled.
+     */
+    static void schedule(Context context) {
+        if (!context.getResources().getBoolean(R.bool.standalone_fetch_enabled)) {
+            return;
+        }
+        JobScheduler jobScheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : jobScheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                return;
+            }
+        }
+        Log.d(LOG_TAG, "Phone unreachable, fetching from the watch");
+        jobScheduler.schedule(new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, StandaloneFetchService.class))
+                .setPeriodic(INTERVAL_MILLIS)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .build());
+    }
+
+    /**
+     * Stops fetching; the phone is back in charge of the forecast.
+     */
+    static void cancel(Context context) {
+        JobScheduler jobScheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        jobScheduler.cancel(JOB_ID);
+    }
+
+    /**
+     * Remembers where the phone's forecast is for, to fetch the same one.
+     */
+    static void setLocation(Context context, String location, boolean hasLatLon, float latitude,
+                            float longitude) {
+        SharedPreferences.Editor editor = getPreferences(context).edit()
+                .putString(KEY_LOCATION, location);
+        if (hasLatLon) {
+            editor.putFloat(KEY_LATITUDE, latitude).putFloat(KEY_LONGITUDE, longitude);
+        } else {
+            editor.remove(KEY_LATITUDE).remove(KEY_LONGITUDE);
+        }
+        editor.apply();
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        mTask = new FetchTask(params);
+        mTask.execute();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        if (mTask != null) {
+            mTask.cancel(true);
+        }
+        // The next period will do
+        return false;
+    }
+
+    private boolean isBatteryLow() {
+        Intent battery = registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) {
+            return false;
+        }
+        boolean charging = battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        return !charging && level >= 0 && scale > 0 && level * 100 / scale < LOW_BATTERY_PERCENT;
+    }
+
+    /**
+     * @return whether a phone that answers forecast requests is connected
+     */
+    private boolean isPhoneReachable() {
+        GoogleApiClient googleApiClient = new GoogleApiClient.Builder(this)
+                .addApi(Wearable.API)
+                .build();
+        ConnectionResult connection =
+                googleApiClient.blockingConnect(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!connection.isSuccess()) {
+            return false;
+        }
+        try {
+            CapabilityApi.GetCapabilityResult result = Wearable.CapabilityApi
+                    .getCapability(googleApiClient, WatchProtocol.CAPABILITY_WEATHER,
+                            CapabilityApi.FILTER_REACHABLE)
+                    .await(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            return result.getStatus().isSuccess()
+                    && !result.getCapability().getNodes().isEmpty();
+        } finally {
+            googleApiClient.disconnect();
+        }
+    }
+
+    private WeatherForecast fetch() throws IOException {
+        SharedPreferences prefs = getPreferences(this);
+        String location = prefs.getString(KEY_LOCATION, null);
+        if (location == null) {
+            Log.d(LOG_TAG, "No location from the phone yet");
+            return null;
+        }
+        ForecastSource source = new ForecastSource(ForecastSource.OPEN_WEATHER_MAP_URL,
+                BuildConfig.OPEN_WEATHER_MAP_API_KEY, new File(getCacheDir(), CACHE_FILE_NAME));
+        String url = prefs.contains(KEY_LATITUDE) && prefs.contains(KEY_LONGITUDE)
+                ? source.buildUrl(prefs.getFloat(KEY_LATITUDE, 0), prefs.getFloat(KEY_LONGITUDE, 0),
+                        FORECAST_DAYS)
+                : source.buildUrl(location, FORECAST_DAYS);
+
+        // Shown in the units the phone last used
+        ForecastStore.Entry stored = ForecastStore.getInstance(this).read();
+        boolean isMetric = stored == null || stored.forecast.isMetric;
+        return source.fetch(url, STANDALONE_VERSION, isMetric);
+    }
+
+    private class FetchTask extends AsyncTask<Void, Void, Void> {
+        private final JobParameters mParams;
+
+        FetchTask(JobParameters params) {
+            mParams = params;
+        }
+
+        @Override
+        protected Void doInBackground(Void... params) {
+            if (isPhoneReachable()) {
+                // Missed the phone coming back; hand over to it
+                cancel(StandaloneFetchService.this);
+                ForecastRequestService.start(StandaloneFetchService.this);
+                return null;
+            }
+            if (isBatteryLow()) {
+                Log.d(LOG_TAG, "Battery low, skipping this fetch");
+                return null;
+            }
+            try {
+                WeatherForecast forecast = fetch();
+                if (forecast != null) {
+                    ForecastStore.getInstance(StandaloneFetchService.this)
+                            .write(forecast, System.currentTimeMillis());
+                }
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Standalone fetch failed", e);
+            }
+            return null;
+        }
+
+        @Override
+        protected void onPostExecute(Void result) {
+            jobFinished(mParams, false);
+        }
+
+        @Override
+        protected void onCancelled(Void result) {
+            // onStopJob already told the scheduler
+        }
+    }
+}
@@ -21,19 +21,13 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.res.Resources;
-import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.Typeface;
-import android.graphics.drawable.BitmapDrawable;
-import android.graphics.drawable.Drawable;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
-import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
 import android.text.format.Time;
@@ -41,22 +35,9 @@ import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.ResultCallback;
-import com.google.android.gms.wearable.DataApi;
-import com.google.android.gms.wearable.DataEvent;
-import com.google.android.gms.wearable.DataEventBuffer;
-import com.google.android.gms.wearable.DataMap;
-import com.google.android.gms.wearable.DataMapItem;
-import com.google.android.gms.wearable.PutDataMapRequest;
-import com.google.android.gms.wearable.PutDataRequest;
-import com.google.android.gms.wearable.Wearable;
+import com.example.android.sunshine.shared.WeatherForecast;
 
 import java.lang.ref.WeakReference;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Locale;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
@@ -110,65 +91,45 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         return new Engine();
     }
 
-    private class Engine extends CanvasWatchFaceService.Engine implements DataApi.DataListener,
-            GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener{
+    private class Engine extends CanvasWatchFaceService.Engine implements ForecastStore.Listener {
         final Handler mUpdateTimeHandler = new EngineHandler(this);
 
-        private static final String WEATHER_PATH = "/weather";
-        private static final String WEATHER_INFO_PATH = "/weather/info";
-		private static final String KEY_WEATHER_ID = "weatherId";
-        private static final String KEY_TEMP_HIGH = "high";
-        private static final String KEY_TEMP_LOW = "low";
-        private static final String KEY_TIMESTAMP = "timestamp";
-
         boolean mRegisteredTimeZoneReceiver = false;
 
-        Paint mBackgroundPaint;
-        Paint mTextPaintTime;
-        Paint mTextPaintDate;
-        Paint mTextPaintHighTemp;
-        Paint mTextPaintLowTemp;
-
-        Bitmap mWeatherImage;
-
-        String mHighTemp;
-        String mLowTemp;
+        // The latest forecast from the phone. It survives the engine in the store, and is stale
+        // from mForecastStaleAt on, which is 0 while there's no forecast at all.
+        WeatherForecast mForecast;
+        ForecastStore mForecastStore;
+        boolean mStoredForecastRead;
+        long mForecastStaleAt;
 
         boolean mAmbient;
 
         Time mTime;
-        Calendar mCalendar;
 
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
                 mTime.clear(intent.getStringExtra("time-zone"));
                 mTime.setToNow();
+                onTimeZoneChanged();
             }
         };
 
-        float mXOffsetTime;
         float mYOffsetTime;
-        float mXOffsetTimeNoSecs;
-
-        float mXOffsetDate;
-        float mYOffsetDate;
-
-        float mYOffsetWeather;
-
 
         /**
          * Whether the display supports fewer bits for each color in ambient mode. When true, we
          * disable anti-aliasing in ambient mode.
          */
         boolean mLowBitAmbient;
+        boolean mBurnInProtection;
 
+        InteractiveRenderer mInteractiveRenderer;
+        AmbientRenderer mAmbientRenderer;
 
-        GoogleApiClient mGoogleApiClient = new GoogleApiClient.Builder(SunshineWatchFace.this)
-                .addConnectionCallbacks(this)
-                .addOnConnectionFailedListener(this)
-                .addApi(Wearable.API)
-                .build();
+        // Only while the frame stats tag is enabled for debug; see FrameStats
+        FrameStats mFrameStats;
 
         @Override
         public void onCreate(SurfaceHolder holder) {
@@ -184,48 +145,43 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             Resources resources = SunshineWatchFace.this.getResources();
 
             mYOffsetTime = resources.getDimension(R.dimen.digital_y_offset);
-            mYOffsetDate = resources.getDimension(R.dimen.digital_date_y_offset);
-            mYOffsetWeather = resources.getDimension(R.dimen.digital_weather_y_offset);
-
-            mBackgroundPaint = new Paint();
-            mBackgroundPaint.setColor(resources.getColor(R.color.background));
-
-            mTextPaintTime = new Paint();
-
-            mTextPaintTime = createTextPaint(resources.getColor(R.color.digital_text));
 
-            mTextPaintDate= new Paint();
-            mTextPaintDate = createTextPaint(resources.getColor(R.color.digital_secondary_text));
-
-            mTextPaintHighTemp = createBoldTextPaint(Color.WHITE);
-            mTextPaintLowTemp = createTextPaint(resources.getColor(R.color.digital_secondary_text));
+            mInteractiveRenderer = new InteractiveRenderer(SunshineWatchFace.this,
+                    NORMAL_TYPEFACE, BOLD_TYPEFACE);
+            mAmbientRenderer = new AmbientRenderer(NORMAL_TYPEFACE,
+                    resources.getDimensionPixelSize(R.dimen.digital_burn_in_shift));
+            if (Log.isLoggable(FrameStats.LOG_TAG, Log.DEBUG)) {
+                mFrameStats = new FrameStats(
+                        resources.getDimension(R.dimen.digital_date_text_size));
+            }
 
             mTime = new Time();
-            mCalendar = Calendar.getInstance();
+
+            // A recreated engine picks up the forecast from memory; the first one in the process
+            // reads it from disk.
+            mForecastStore = ForecastStore.getInstance(SunshineWatchFace.this);
+            mForecastStore.addListener(this);
+            ForecastStore.Entry stored = mForecastStore.getCached();
+            if (stored != null) {
+                mStoredForecastRead = true;
+                setForecast(stored);
+            } else {
+                new ReadStoredForecastTask().execute();
+            }
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mForecastStore.removeListener(this);
+            mInteractiveRenderer.release();
+            mAmbientRenderer.releaseAtlas();
+            if (mFrameStats != null) {
+                mFrameStats.release();
+            }
             super.onDestroy();
         }
 
-        private Paint createTextPaint(int textColor) {
-            Paint paint = new Paint();
-            paint.setColor(textColor);
-            paint.setTypeface(NORMAL_TYPEFACE);
-            paint.setAntiAlias(true);
-            return paint;
-        }
-
-        private Paint createBoldTextPaint(int textColor) {
-            Paint paint = new Paint();
-            paint.setColor(textColor);
-            paint.setTypeface(BOLD_TYPEFACE);
-            paint.setAntiAlias(true);
-            return paint;
-        }
-
         @Override
         public void onVisibilityChanged(boolean visible) {
             super.onVisibilityChanged(visible);
@@ -236,15 +192,15 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                 // Update time zone in case it changed while we weren't visible.
                 mTime.clear(TimeZone.getDefault().getID());
                 mTime.setToNow();
+                onTimeZoneChanged();
 
-                mGoogleApiClient.connect();
-
+                // The store is kept up to date in the background; this only checks its age
+                requestForecastIfStale();
             } else {
                 unregisterReceiver();
-
-                if (mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
-                    Wearable.DataApi.removeListener(mGoogleApiClient, this);
-                    mGoogleApiClient.disconnect();
+                if (mFrameStats != null) {
+                    // Frames aren't due while hidden
+                    mFrameStats.reset();
                 }
             }
 
@@ -270,6 +226,10 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             SunshineWatchFace.this.unregisterReceiver(mTimeZoneReceiver);
         }
 
+        private void onTimeZoneChanged() {
+            mInteractiveRenderer.onTimeZoneChanged();
+        }
+
         @Override
         public void onApplyWindowInsets(WindowInsets insets) {
             super.onApplyWindowInsets(insets);
@@ -277,35 +237,17 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             // Load resources that have alternate values for round watches.
             Resources resources = SunshineWatchFace.this.getResources();
             boolean isRound = insets.isRound();
-            mXOffsetTime = resources.getDimension(isRound
-                    ? R.dimen.digital_x_offset_round : R.dimen.digital_x_offset);
-            mXOffsetDate = resources.getDimension(isRound
-                    ? R.dimen.digital_x_offset_round : R.dimen.digital_x_offset);
-
-            mXOffsetTimeNoSecs = resources.getDimension(isRound
-                    ? R.dimen.digital_x_offset_round : R.dimen.digital_x_offset);
-            float timeTextSize = resources.getDimension(isRound
-                    ? R.dimen.digital_time_text_size_round : R.dimen.digital_time_text_size);
-            float dateTextSize = resources.getDimension(isRound
-                    ? R.dimen.digital_date_text_size_round : R.dimen.digital_date_text_size);
-            float tempTextSize = resources.getDimension(isRound
-                    ? R.dimen.digital_temp_text_size_round : R.dimen.digital_temp_text_size);
-
-
-
-            float textSize = resources.getDimension(isRound
-                    ? R.dimen.digital_text_size_round : R.dimen.digital_text_size);
-
-            mTextPaintTime.setTextSize(timeTextSize);
-            mTextPaintDate.setTextSize(dateTextSize);
-            mTextPaintHighTemp.setTextSize(tempTextSize);
-            mTextPaintLowTemp.setTextSize(tempTextSize);
+            mInteractiveRenderer.applyInsets(isRound);
+            mAmbientRenderer.setTextSize(resources.getDimension(isRound
+                    ? R.dimen.digital_time_text_size_round : R.dimen.digital_time_text_size));
         }
 
         @Override
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            mBurnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
+            mAmbientRenderer.setProperties(mLowBitAmbient, mBurnInProtection);
         }
 
         @Override
@@ -319,13 +261,8 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             super.onAmbientModeChanged(inAmbientMode);
             if (mAmbient != inAmbientMode) {
                 mAmbient = inAmbientMode;
-                if (mLowBitAmbient) {
-                    mTextPaintTime.setAntiAlias(!inAmbientMode);
-                    mTextPaintDate.setAntiAlias(!inAmbientMode);
-                    mTextPaintHighTemp.setAntiAlias(!inAmbientMode);
-                    mTextPaintLowTemp.setAntiAlias(!inAmbientMode);
-
-                }
+                // Ambient frames come from mAmbientRenderer, which handles low-bit screens
+                // itself, so the interactive paints and layer stay as they are.
                 invalidate();
             }
 
@@ -351,7 +288,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                 case TAP_TYPE_TAP:
                     // The user has completed the tap gesture. Let's refresh weather data
 
-                    getWeatherData();
+                    ForecastRequestService.start(SunshineWatchFace.this);
 
                     break;
             }
@@ -360,49 +297,19 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-
-            if (isInAmbientMode()) {
-                canvas.drawColor(Color.BLACK);
-            } else {
-                canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
-            }
-
-            // Draw H:MM in ambient mode or H:MM:SS in interactive mode.
             mTime.setToNow();
-            String text = mAmbient
-                    ? String.format(Locale.US, "%d:%02d", mTime.hour, mTime.minute)
-                    : String.format(Locale.US, "%d:%02d:%02d", mTime.hour, mTime.minute, mTime.second);
-
-            if (mTextPaintTime != null) {
-                float timeTextLen = mTextPaintTime.measureText(text);
-                canvas.drawText(text, bounds.centerX() - timeTextLen / 2, mYOffsetTime, mTextPaintTime);
+            if (mFrameStats != null) {
+                mFrameStats.beginFrame(mAmbient);
             }
-            //canvas.drawText(text, mXOffsetTime, mYOffsetTime, mTextPaintTime);
-
-            if ( ! mAmbient) {
-                Paint datePaint = mTextPaintDate;
-
-                SimpleDateFormat sdf = new SimpleDateFormat("EEE, MMM dd yyyy", Locale.US);
-
-                String dateText = sdf.format(mCalendar.getTime()).toUpperCase();
-
-                float xOffsetDate = datePaint.measureText(dateText) / 2;
-                canvas.drawText(dateText, bounds.centerX() - xOffsetDate, mYOffsetDate, datePaint);
+            if (mAmbient) {
+                // H:MM only, once a minute from onTimeTick; no date or weather work at all
+                mAmbientRenderer.draw(canvas, bounds, mTime.hour, mTime.minute, mYOffsetTime);
+            } else {
+                mInteractiveRenderer.draw(canvas, bounds, mTime);
             }
-
-            if ( ! mAmbient) {
-                if (mHighTemp != null && mLowTemp != null) {
-                    canvas.drawLine(bounds.centerX() - 30, mYOffsetDate + 20, bounds.centerX() + 30, mYOffsetDate + 20, mTextPaintLowTemp);
-                    float highTextLen = mTextPaintHighTemp.measureText(mHighTemp);
-                    if (mWeatherImage != null) {
-                        float iconXOffset = bounds.centerX() - ((highTextLen / 2) + mWeatherImage.getWidth() + 20);
-                        canvas.drawBitmap(mWeatherImage, iconXOffset, mYOffsetWeather - mWeatherImage.getHeight() + 5, null);
-                    }
-                    float xOffset = bounds.centerX() - (highTextLen / 2);
-                    canvas.drawText(mHighTemp, xOffset, mYOffsetWeather, mTextPaintHighTemp);
-                    canvas.drawText(mLowTemp, bounds.centerX() + (highTextLen / 2) + 20, mYOffsetWeather, mTextPaintLowTemp);
-
-                }
+            if (mFrameStats != null) {
+                mFrameStats.endFrame();
+                mFrameStats.draw(canvas, bounds, mAmbient);
             }
         }
 
@@ -438,78 +345,53 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         }
 
         @Override
-        public void onConnected(@Nullable Bundle bundle) {
-            Log.d(TAG, "onConnected called!");
-
-            Wearable.DataApi.addListener(mGoogleApiClient, Engine.this);
-            getWeatherData();
-        }
-
-        @Override
-        public void onConnectionSuspended(int i) {
-
+        public void onForecastChanged(ForecastStore.Entry entry) {
+            setForecast(entry);
         }
 
-        @Override
-        public void onDataChanged(DataEventBuffer dataEventBuffer) {
-            Log.d(TAG, "onDataChanged called!");
-            for (DataEvent dataEvent : dataEventBuffer) {
-                if (dataEvent.getType() == DataEvent.TYPE_CHANGED) {
-                    DataMap dataMap = DataMapItem.fromDataItem(dataEvent.getDataItem()).getDataMap();
-                    String path = dataEvent.getDataItem().getUri().getPath();
-                    if (path.equals(WEATHER_INFO_PATH)) {
-
-                        if (dataMap.containsKey(KEY_WEATHER_ID)) {
-                            int weatherId = dataMap.getInt(KEY_WEATHER_ID);
-                            Drawable b = getResources().getDrawable(SunshineWatchFaceUtil.getWeatherConditionImage(weatherId), null);
-                            Bitmap icon = b != null ? ((BitmapDrawable) b).getBitmap() : null;
-
-                            float desiredSize = mTextPaintHighTemp.getTextSize() / icon.getHeight() * icon.getWidth() + 10;
-
-                            mWeatherImage = Bitmap.createScaledBitmap(icon, (int)desiredSize, (int)desiredSize, true);
-                        }
-
-                        if (dataMap.containsKey(KEY_TEMP_HIGH)) {
-                            mHighTemp = dataMap.getString(KEY_TEMP_HIGH);
-                            Log.d(TAG, "Setting high temperature to: " + mHighTemp);
-                        }
-
-                        if (dataMap.containsKey(KEY_TEMP_LOW)) {
-                            mLowTemp = dataMap.getString(KEY_TEMP_LOW);
-                            Log.d(TAG, "Setting high temperature to: " + mLowTemp);
-                        }
-
-                        invalidate();
-                    }
-                }
+        private void setForecast(ForecastStore.Entry entry) {
+            mForecast = entry.forecast;
+            mForecastStaleAt = entry.getStaleAt();
+            mTime.setToNow();
+            mInteractiveRenderer.setForecast(entry.forecast, mForecastStaleAt, mTime);
+            // Ambient frames don't show the weather; the next interactive one will
+            if (!mAmbient) {
+                invalidate();
             }
         }
 
-        @Override
-        public void onConnectionFailed(@NonNull ConnectionResult connectionResult) {
-            Log.e(TAG, "Failed connecting to phone : " + connectionResult.getErrorCode());
+        /**
+         * Asks the phone for a sync, but only once the stored forecast has been read and turned
+         * out to be stale or missing, and not more often than the store allows.
+         */
+        private void requestForecastIfStale() {
+            if (!mStoredForecastRead) {
+                // Called again once it has been
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (now >= mForecastStaleAt && mForecastStore.claimRequest(now)) {
+                ForecastRequestService.start(SunshineWatchFace.this);
+            }
         }
 
+        /**
+         * Reads the stored forecast off the main thread, for the first engine in the process.
+         */
+        private class ReadStoredForecastTask extends AsyncTask<Void, Void, ForecastStore.Entry> {
+            @Override
+            protected ForecastStore.Entry doInBackground(Void... params) {
+                return mForecastStore.read();
+            }
 
-        public void getWeatherData() {
-            PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(WEATHER_PATH);
-            putDataMapRequest.getDataMap().putString(KEY_TIMESTAMP, String.valueOf(System.currentTimeMillis()));
-            PutDataRequest request = putDataMapRequest.asPutDataRequest();
-
-            Log.d(TAG, "Querying phone...");
-
-            Wearable.DataApi.putDataItem(mGoogleApiClient, request)
-                    .setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
-                        @Override
-                        public void onResult(@NonNull DataApi.DataItemResult dataItemResult) {
-                            if (!dataItemResult.getStatus().isSuccess()) {
-                                Log.d(TAG, "Querying phone failed. Weather data won't be available.");
-                            } else {
-                                if (DataMapItem.fromDataItem(dataItemResult.getDataItem()).getDataMap().size() > 2)
-                                    Log.d(TAG, "Received weather data from the phone :-)");
-                            }
-                        }
-                    });
+            @Override
+            protected void onPostExecute(ForecastStore.Entry entry) {
+                mStoredForecastRead = true;
+                if (entry != null && mForecast == null) {
+                    setForecast(entry);
+                }
+                requestForecastIfStale();
+            }
         }
     }
 }
@@ -1,35 +1,36 @@
 package com.example.android.sunshine.app;
 
 
-import android.content.res.Resources;
-import android.util.Log;
+import android.content.Context;
 
-import java.util.Calendar;
+import com.example.android.sunshine.shared.WeatherConditions;
 
 public class SunshineWatchFaceUtil {
 
     // Codes: http://openweathermap.org/weather-conditions
+    // The mapping itself lives in the shared module so the watch always agrees with the phone.
 
+    /**
+     * @return resource id for the condition icon, -1 if no relation is found.
+     */
     public static int getWeatherConditionImage(int conditionCode) {
+        return WeatherConditions.getIconResource(conditionCode);
+    }
+
+    /**
+     * @param temperature in degrees Celsius, as the phone sends it
+     * @return the temperature in the units the user picked on the phone
+     */
+    public static double toDisplayUnits(double temperature, boolean isMetric) {
+        return isMetric ? temperature : (temperature * 1.8) + 32;
+    }
 
-        if ((conditionCode >= 200 && conditionCode <= 232) || conditionCode == 761 || conditionCode == 781) {
-            return R.drawable.ic_storm;
-        } else if (conditionCode >= 300 && conditionCode <= 321) {
-            return R.drawable.ic_light_rain;
-        } else if ((conditionCode >= 500 && conditionCode <= 504) || (conditionCode >= 520 && conditionCode <= 531)) {
-            return R.drawable.ic_rain;
-        } else if (conditionCode == 511 || (conditionCode >= 600 && conditionCode <= 622)) {
-            return R.drawable.ic_snow;
-        } else if (conditionCode >= 701 && conditionCode <= 761) {
-            return R.drawable.ic_fog;
-        } else if (conditionCode == 800) {
-            return R.drawable.ic_clear;
-        } else if (conditionCode == 801) {
-            return R.drawable.ic_light_clouds;
-        } else if (conditionCode >= 802 && conditionCode <= 804) {
-            return R.drawable.ic_cloudy;
-        }
-        return 0;
+    /**
+     * @param temperature in degrees Celsius, as the phone sends it
+     */
+    public static String formatTemperature(Context context, double temperature, boolean isMetric) {
+        return String.format(context.getString(R.string.format_temperature),
+                toDisplayUnits(temperature, isMetric));
     }
 
 }
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.annotation.TargetApi;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Color;
+import android.graphics.drawable.Icon;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationManager;
+import android.support.wearable.complications.ComplicationProviderService;
+import android.support.wearable.complications.ComplicationText;
+import android.support.wearable.complications.ProviderUpdateRequester;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.example.android.sunshine.shared.WeatherForecast;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Today's weather for any watch face, from the {@link ForecastStore}: the high as short text with
+ * the condition icon, the icon alone, or the high as a ranged value between the coldest low and
+ * the warmest high of the forecast.
+ *
+ * The system never polls for updates. {@link ForecastStore} calls {@link #requestUpdate(Context)}
+ * when a forecast with different content arrives, so a face showing the complication costs no
+ * phone or network traffic beyond what the store already gets. Each update also schedules the
+ * next one at midnight or when the forecast goes stale, whichever comes first, through
+ * {@link ComplicationUpdateReceiver}. A stale forecast is shown with a grey icon and a stale
+ * label in place of the low, as the face dims it.
+ */
+@TargetApi(Build.VERSION_CODES.N)
+public class WeatherComplicationProviderService extends ComplicationProviderService {
+    private static final String LOG_TAG = WeatherComplicationProviderService.class.getSimpleName();
+
+    // The ids of complications showing this provider, so they can be updated without being asked
+    private static final String PREFS_NAME = "weather_complications";
+    private static final String KEY_ACTIVE_IDS = "active_ids";
+
+    /**
+     * Has the system ask for new data for every active complication. Does nothing before
+     * Android Wear 2.0, which has no complications.
+     */
+    static void requestUpdate(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return;
+        }
+        Set<String> ids = getPreferences(context).getStringSet(KEY_ACTIVE_IDS, null);
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        int[] complicationIds = new int[ids.size()];
+        int i = 0;
+        for (String id : ids) {
+            complicationIds[i++] = Integer.parseInt(id);
+        }
+        new ProviderUpdateRequester(context,
+                new ComponentName(context, WeatherComplicationProviderService.class))
+                .requestUpdate(complicationIds);
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public void onComplicationActivated(int complicationId, int type,
+                                        ComplicationManager manager) {
+        setActive(complicationId, true);
+    }
+
+    @Override
+    public void onComplicationDeactivated(int complicationId) {
+        setActive(complicationId, false);
+    }
+
+    private void setActive(int complicationId, boolean active) {
+        SharedPreferences prefs = getPreferences(this);
+        // getStringSet's result mustn't be modified
+        Set<String> ids = new HashSet<String>(
+                prefs.getStringSet(KEY_ACTIVE_IDS, new HashSet<String>()));
+        boolean changed = active
+                ? ids.add(String.valueOf(complicationId))
+                : ids.remove(String.valueOf(complicationId));
+        if (changed) {
+            prefs.edit().putStringSet(KEY_ACTIVE_IDS, ids).apply();
+        }
+    }
+
+    @Override
+    public void onComplicationUpdate(final int complicationId, final int type,
+                                     final ComplicationManager manager) {
+        // The first read in the process goes to disk
+        new AsyncTask<Void, Void, ForecastStore.Entry>() {
+            @Override
+            protected ForecastStore.Entry doInBackground(Void... params) {
+                return ForecastStore.getInstance(WeatherComplicationProviderService.this).read();
+            }
+
+            @Override
+            protected void onPostExecute(ForecastStore.Entry entry) {
+                manager.updateComplicationData(complicationId, createData(type, entry));
+            }
+        }.execute();
+    }
+
+    private ComplicationData createData(int type, ForecastStore.Entry entry) {
+        Time time = new Time();
+        time.setToNow();
+        long now = time.toMillis(false);
+        int julianDay = Time.getJulianDay(now, time.gmtoff);
+        boolean stale = entry == null || entry.isStale(now);
+
+        // What's shown now is right until midnight, or until the forecast goes stale
+        long nextUpdate = new Time().setJulianDay(julianDay + 1);
+        if (!stale) {
+            nextUpdate = Math.min(nextUpdate, entry.getStaleAt());
+        }
+        ComplicationUpdateReceiver.schedule(this, nextUpdate);
+
+        int day = entry != null ? entry.forecast.getDayIndex(julianDay) : -1;
+        if (day == -1) {
+            return new ComplicationData.Builder(ComplicationData.TYPE_NO_DATA).build();
+        }
+
+        WeatherForecast forecast = entry.forecast;
+        int iconRes = SunshineWatchFaceUtil.getWeatherConditionImage(forecast.getWeatherId(day));
+        Icon icon = iconRes != -1 ? Icon.createWithResource(this, iconRes) : null;
+        if (icon != null && stale) {
+            icon.setTint(Color.GRAY);
+        }
+        ComplicationText high = ComplicationText.plainText(SunshineWatchFaceUtil
+                .formatTemperature(this, forecast.getHigh(day), forecast.isMetric));
+        ComplicationText low = ComplicationText.plainText(stale
+                ? getString(R.string.complication_weather_stale)
+                : SunshineWatchFaceUtil.formatTemperature(this, forecast.getLow(day),
+                        forecast.isMetric));
+
+        switch (type) {
+            case ComplicationData.TYPE_SHORT_TEXT:
+                return new ComplicationData.Builder(type)
+                        .setShortText(high)
+                        .setShortTitle(low)
+                        .setIcon(icon)
+                        .build();
+            case ComplicationData.TYPE_ICON:
+                if (icon == null) {
+                    break;
+                }
+                return new ComplicationData.Builder(type)
+                        .setIcon(icon)
+                        .build();
+            case ComplicationData.TYPE_RANGED_VALUE:
+                float min = Float.MAX_VALUE;
+                float max = -Float.MAX_VALUE;
+                for (int i = 0; i < forecast.getDayCount(); i++) {
+                    min = Math.min(min, toDisplayUnits(forecast, forecast.getLow(i)));
+                    max = Math.max(max, toDisplayUnits(forecast, forecast.getHigh(i)));
+                }
+                return new ComplicationData.Builder(type)
+                        .setValue(toDisplayUnits(forecast, forecast.getHigh(day)))
+                        .setMinValue(min)
+                        .setMaxValue(max)
+                        .setShortText(high)
+                        .setShortTitle(stale
+                                ? ComplicationText.plainText(
+                                        getString(R.string.complication_weather_stale))
+                                : null)
+                        .setIcon(icon)
+                        .build();
+            default:
+                Log.w(LOG_TAG, "Unexpected complication type " + type);
+                break;
+        }
+        return new ComplicationData.Builder(ComplicationData.TYPE_NO_DATA).build();
+    }
+
+    private static float toDisplayUnits(WeatherForecast forecast, double temperature) {
+        return (float) SunshineWatchFaceUtil.toDisplayUnits(temperature, forecast.isMetric);
+    }
+}
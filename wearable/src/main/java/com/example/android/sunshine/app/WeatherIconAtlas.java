@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import com.example.android.sunshine.shared.WeatherConditions;
+
+/**
+ * Every condition icon, pre-scaled to the size the face draws it at, side by side in one bitmap.
+ *
+ * The atlas is built the first time an icon is drawn after the size changes, which only happens
+ * when the window insets (and so the screen shape and text sizes) are applied. A weather change
+ * is then a category lookup and a copy out of the atlas, instead of a decode and a scale.
+ */
+final class WeatherIconAtlas {
+    // Slot i holds the icon for category i + 1; CATEGORY_NONE has no icon
+    private static final int SLOTS = WeatherConditions.CATEGORY_COUNT - 1;
+
+    private final Resources mResources;
+    private final Rect mSrc = new Rect();
+    private final Rect mDst = new Rect();
+
+    private Bitmap mAtlas;
+    private int mIconSize;
+
+    WeatherIconAtlas(Resources resources) {
+        mResources = resources;
+    }
+
+    /**
+     * @param iconSize width and height of the icons, in pixels
+     */
+    void setIconSize(int iconSize) {
+        if (iconSize != mIconSize) {
+            mIconSize = iconSize;
+            release();
+        }
+    }
+
+    int getIconSize() {
+        return mIconSize;
+    }
+
+    void release() {
+        if (mAtlas != null) {
+            mAtlas.recycle();
+            mAtlas = null;
+        }
+    }
+
+    private void build() {
+        mAtlas = Bitmap.createBitmap(mIconSize * SLOTS, mIconSize, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(mAtlas);
+        for (int slot = 0; slot < SLOTS; slot++) {
+            int iconRes = WeatherConditions.getIconResourceForCategory(slot + 1);
+            Drawable icon = iconRes != -1 ? mResources.getDrawable(iconRes, null) : null;
+            if (icon != null) {
+                // Drawn straight into its slot at the final size; nothing else is kept
+                icon.setBounds(slot * mIconSize, 0, (slot + 1) * mIconSize, mIconSize);
+                icon.draw(canvas);
+            }
+        }
+    }
+
+    /**
+     * @param paint supplies the alpha, or null to draw the icon as is
+     * @return false if there is no icon for the condition, in which case nothing is drawn
+     */
+    boolean draw(Canvas canvas, int weatherId, float left, float top, Paint paint) {
+        int category = WeatherConditions.getCategory(weatherId);
+        if (category == WeatherConditions.CATEGORY_NONE || mIconSize <= 0) {
+            return false;
+        }
+        if (mAtlas == null) {
+            build();
+        }
+        int slot = category - 1;
+        mSrc.set(slot * mIconSize, 0, (slot + 1) * mIconSize, mIconSize);
+        int x = Math.round(left);
+        int y = Math.round(top);
+        mDst.set(x, y, x + mIconSize, y + mIconSize);
+        // Same size in and out, so no filtering is needed
+        canvas.drawBitmap(mAtlas, mSrc, mDst, paint);
+        return true;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.util.Log;
+
+import com.example.android.sunshine.shared.WatchProtocol;
+import com.example.android.sunshine.shared.WeatherForecast;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.Asset;
+import com.google.android.gms.wearable.CapabilityInfo;
+import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.DataEvent;
+import com.google.android.gms.wearable.DataEventBuffer;
+import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataMap;
+import com.google.android.gms.wearable.DataMapItem;
+import com.google.android.gms.wearable.MessageEvent;
+import com.google.android.gms.wearable.Wearable;
+import com.google.android.gms.wearable.WearableListenerService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives everything the phone sends, published forecasts and answers to requests, and keeps it
+ * in the {@link ForecastStore}. Also hears when the phone comes and goes, to start and stop the
+ * {@link StandaloneFetchService}.
+ *
+ * The system starts the service for these events whether or not the face is visible, and the
+ * callbacks run on a background thread, so the asset can be read with blocking calls. The
+ * manifest filters the events down to the forecast paths.
+ */
+public class WeatherListenerService extends WearableListenerService {
+    private static final String LOG_TAG = WeatherListenerService.class.getSimpleName();
+
+    private static final String WEATHER_INFO_PATH = "/weather/info";
+    private static final String KEY_FORECAST = "forecast";
+    private static final String KEY_LOCATION = "location";
+    private static final String KEY_LATITUDE = "latitude";
+    private static final String KEY_LONGITUDE = "longitude";
+    private static final long CONNECT_TIMEOUT_SECONDS = 10;
+    private static final long ASSET_TIMEOUT_SECONDS = 10;
+
+    private GoogleApiClient mGoogleApiClient;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        mGoogleApiClient = new GoogleApiClient.Builder(this)
+                .addApi(Wearable.API)
+                .build();
+    }
+
+    @Override
+    public void onDestroy() {
+        mGoogleApiClient.disconnect();
+        super.onDestroy();
+    }
+
+    @Override
+    public void onDataChanged(DataEventBuffer dataEvents) {
+        for (DataEvent dataEvent : dataEvents) {
+            DataItem dataItem = dataEvent.getDataItem();
+            if (dataEvent.getType() != DataEvent.TYPE_CHANGED
+                    || !WEATHER_INFO_PATH.equals(dataItem.getUri().getPath())) {
+                continue;
+            }
+            DataMap dataMap = DataMapItem.fromDataItem(dataItem).getDataMap();
+            if (dataMap.containsKey(KEY_LOCATION)) {
+                StandaloneFetchService.setLocation(this, dataMap.getString(KEY_LOCATION),
+                        dataMap.containsKey(KEY_LATITUDE) && dataMap.containsKey(KEY_LONGITUDE),
+                        dataMap.getFloat(KEY_LATITUDE), dataMap.getFloat(KEY_LONGITUDE));
+            }
+            Asset asset = dataMap.getAsset(KEY_FORECAST);
+            WeatherForecast forecast = asset != null ? readForecast(asset) : null;
+            if (forecast != null) {
+                ForecastStore.getInstance(this).receive(forecast, System.currentTimeMillis());
+            }
+        }
+    }
+
+    @Override
+    public void onMessageReceived(MessageEvent messageEvent) {
+        if (!WatchProtocol.RESPONSE_PATH.equals(messageEvent.getPath())) {
+            return;
+        }
+        // Both kinds of answer leave the watch with the phone's latest forecast, which makes it
+        // fresh again
+        ForecastStore store = ForecastStore.getInstance(this);
+        long now = System.currentTimeMillis();
+        byte[] response = messageEvent.getData();
+        switch (WatchProtocol.getStatus(response)) {
+            case WatchProtocol.STATUS_CURRENT:
+                store.confirm(now);
+                break;
+            case WatchProtocol.STATUS_FORECAST:
+                WeatherForecast forecast = WatchProtocol.getForecast(response);
+                if (forecast == null) {
+                    Log.w(LOG_TAG, "Forecast response in an unknown format");
+                } else {
+                    store.write(forecast, now);
+                }
+                break;
+            default:
+                // The phone is syncing; the forecast will come as a data item
+                break;
+        }
+    }
+
+    @Override
+    public void onCapabilityChanged(CapabilityInfo capabilityInfo) {
+        if (!WatchProtocol.CAPABILITY_WEATHER.equals(capabilityInfo.getName())) {
+            return;
+        }
+        if (capabilityInfo.getNodes().isEmpty()) {
+            StandaloneFetchService.schedule(this);
+        } else {
+            // The phone is back: it's the one to ask again, and its answer replaces whatever the
+            // watch fetched on its own
+            StandaloneFetchService.cancel(this);
+            ForecastRequestService.start(this);
+        }
+    }
+
+    /**
+     * @return the forecast in the asset, or null if it can't be fetched or read
+     */
+    private WeatherForecast readForecast(Asset asset) {
+        if (!mGoogleApiClient.isConnected()) {
+            ConnectionResult result =
+                    mGoogleApiClient.blockingConnect(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (!result.isSuccess()) {
+                Log.w(LOG_TAG, "Couldn't connect to the wearable API: " + result);
+                return null;
+            }
+        }
+        DataApi.GetFdForAssetResult result = Wearable.DataApi
+                .getFdForAsset(mGoogleApiClient, asset)
+                .await(ASSET_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        InputStream in = result.getStatus().isSuccess() ? result.getInputStream() : null;
+        if (in == null) {
+            Log.w(LOG_TAG, "Forecast asset not available");
+            return null;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            WeatherForecast forecast = WeatherForecast.fromByteArray(bytes.toByteArray());
+            if (forecast == null) {
+                Log.w(LOG_TAG, "Forecast asset in an unknown format");
+            }
+            return forecast;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Failed reading the forecast asset", e);
+            return null;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Nothing left to read from it anyway
+            }
+        }
+    }
+}